@@ -0,0 +1,341 @@
+package jsvm;
+
+import Jama.Matrix;
+import jsvm.base.FeatureScaler;
+import jsvm.base.SparseMatrix;
+import jsvm.base.SupportVectorMachine;
+import jsvm.base.SvmModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+/**
+ * 级联支持向量机
+ * 训练集按类别分层随机划分为若干份，每一份单独训练，得到的支持向量两两合并后再训练，
+ * 逐层合并直到只剩一份。然后用最终模型检查全部样本的KKT条件，
+ * 存在违反条件的样本时把最终的支持向量加入第一层的每一份，重新级联，直到满足条件或达到最大轮数
+ * 同一层的子问题在多个线程中同时训练，每个子问题只计算自己的K
+ */
+public class CascadeSvm {
+    //样本集 - m*n，与sparseData只有一个不为空
+    private Matrix data;
+    private SparseMatrix sparseData;
+    //标签 - m*1
+    private final Matrix labels;
+    private final int sampleCount;
+    private final int featureCount;
+
+    private final BiFunction<Matrix, Matrix, ? extends SupportVectorMachine> denseFactory;
+    private final BiFunction<SparseMatrix, Matrix, ? extends SupportVectorMachine> sparseFactory;
+
+    private FeatureScaler scaler;
+    //第一层的份数
+    private int partitions = Runtime.getRuntime().availableProcessors();
+    private int maxPasses = 3;
+    //KKT条件 y*f(x) >= 1 - tolerance
+    private double tolerance = 1e-3;
+    private long seed = 0;
+
+    //最近一次训练的轮数和最后一轮违反KKT条件的样本个数
+    private int passes;
+    private int violatorCount;
+
+    /**
+     * @param data    m*n
+     * @param labels  m*1
+     * @param factory 创建二分类训练器，例如 CostSensitiveSvm::new
+     */
+    public CascadeSvm(Matrix data, Matrix labels, BiFunction<Matrix, Matrix, ? extends SupportVectorMachine> factory) {
+        this.data = data;
+        this.labels = labels;
+        this.sampleCount = data.getRowDimension();
+        this.featureCount = data.getColumnDimension();
+        this.denseFactory = factory;
+        this.sparseFactory = null;
+    }
+
+    /**
+     * @param data    稀疏样本集 m*n
+     * @param labels  m*1
+     * @param factory 创建二分类训练器，例如 CostSensitiveSvm::new
+     */
+    public CascadeSvm(SparseMatrix data, Matrix labels,
+                      BiFunction<SparseMatrix, Matrix, ? extends SupportVectorMachine> factory) {
+        this.sparseData = data;
+        this.labels = labels;
+        this.sampleCount = data.getRowDimension();
+        this.featureCount = data.getColumnDimension();
+        this.denseFactory = null;
+        this.sparseFactory = factory;
+    }
+
+    /**
+     * 对所有样本进行归一化，需要在train之前调用
+     *
+     * @param type 归一化方式
+     * @return 归一化参数
+     */
+    public FeatureScaler normalize(FeatureScaler.Type type) {
+        if (sparseData == null) {
+            scaler = FeatureScaler.fit(data, type);
+            scaler.transformInPlace(data);
+        } else {
+            scaler = FeatureScaler.fit(sparseData, type);
+            sparseData = scaler.transform(sparseData);
+        }
+        return scaler;
+    }
+
+    public void setPartitions(int partitions) {
+        if (partitions < 1) throw new IllegalArgumentException("份数必须大于0 : " + partitions);
+        this.partitions = partitions;
+    }
+
+    public void setMaxPasses(int maxPasses) {
+        this.maxPasses = maxPasses;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @param seed 划分样本时的随机数种子
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param maxIteration 每个子问题的最大迭代次数
+     * @param param        二分类训练器的参数，所有子问题相同
+     * @return 模型
+     */
+    public SvmModel train(int maxIteration, double... param) {
+        List<int[]> firstLayer = partition();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(partitions, Runtime.getRuntime().availableProcessors()));
+        try {
+            Part result = null;
+            SupportVectorMachine last = null;
+            passes = 0;
+            while (passes < maxPasses) {
+                passes++;
+                //第一层的每一份都加入上一轮的支持向量，并从上一轮的解开始优化
+                List<Part> layer = new ArrayList<>();
+                for (int[] part : firstLayer) {
+                    layer.add(result == null ? new Part(part, null, 0) : result.extend(part));
+                }
+
+                while (true) {
+                    List<Future<SupportVectorMachine>> futures = new ArrayList<>();
+                    for (Part part : layer) {
+                        futures.add(executor.submit(() -> trainPart(part, maxIteration, param)));
+                    }
+                    List<Part> svParts = new ArrayList<>();
+                    for (int k = 0; k < layer.size(); k++) {
+                        last = futures.get(k).get();
+                        svParts.add(Part.ofSv(layer.get(k).idx, last));
+                    }
+                    if (layer.size() == 1) break;
+
+                    //相邻两份的支持向量合并为下一层的一份
+                    List<Part> next = new ArrayList<>();
+                    for (int k = 0; k < svParts.size(); k += 2) {
+                        next.add(k + 1 < svParts.size() ? svParts.get(k).merge(svParts.get(k + 1)) : svParts.get(k));
+                    }
+                    layer = next;
+                }
+
+                Part svPart = Part.ofSv(layer.get(0).idx, last);
+                violatorCount = countViolators(last.getModel(), svPart.idx);
+                boolean stable = result != null && Arrays.equals(svPart.idx, result.idx);
+                result = svPart;
+                if (violatorCount == 0 || stable) break;
+            }
+            return withScaler(last.getModel());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("训练被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 按类别分层随机划分，保证每一份都包含正负样本
+     */
+    private List<int[]> partition() {
+        List<Integer> positive = new ArrayList<>();
+        List<Integer> negative = new ArrayList<>();
+        for (int i = 0; i < sampleCount; i++) {
+            if (labels.get(i, 0) == 1) positive.add(i);
+            else negative.add(i);
+        }
+        Random random = new Random(seed);
+        Collections.shuffle(positive, random);
+        Collections.shuffle(negative, random);
+
+        int count = Math.max(1, Math.min(partitions, Math.min(positive.size(), negative.size())));
+        List<List<Integer>> parts = new ArrayList<>();
+        for (int k = 0; k < count; k++) parts.add(new ArrayList<>());
+        for (int t = 0; t < positive.size(); t++) parts.get(t % count).add(positive.get(t));
+        for (int t = 0; t < negative.size(); t++) parts.get(t % count).add(negative.get(t));
+
+        List<int[]> res = new ArrayList<>();
+        for (List<Integer> part : parts) {
+            res.add(part.stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+        return res;
+    }
+
+    private SupportVectorMachine trainPart(Part part, int maxIteration, double[] param) {
+        int[] idx = part.idx;
+        Matrix subLabels = labels.getMatrix(idx, 0, 0);
+        SupportVectorMachine svm = sparseData == null
+                ? denseFactory.apply(data.getMatrix(idx, 0, featureCount - 1), subLabels)
+                : sparseFactory.apply(sparseData.selectRows(idx), subLabels);
+        if (part.alpha != null) svm.warmStart(part.alpha, part.b);
+        svm.train(maxIteration, param);
+        return svm;
+    }
+
+    /**
+     * 不是支持向量的样本需要满足 y*f(x) >= 1 - tolerance
+     */
+    private int countViolators(SvmModel model, int[] svIdx) {
+        boolean[] isSv = new boolean[sampleCount];
+        for (int i : svIdx) isSv[i] = true;
+        return (int) IntStream.range(0, sampleCount).parallel()
+                .filter(i -> !isSv[i])
+                .filter(i -> {
+                    double f = sparseData == null
+                            ? model.decisionValue(data.getArray()[i])
+                            : model.decisionValue(sparseData.row(i));
+                    return labels.get(i, 0) * f < 1 - tolerance;
+                })
+                .count();
+    }
+
+    /**
+     * 子问题训练时样本已经归一化，最终模型需要带上归一化参数
+     */
+    private SvmModel withScaler(SvmModel model) {
+        if (scaler == null) return model;
+        if (model.isSparse()) {
+            return new SvmModel(model.getKernel(), model.getB(),
+                    model.getCoefficients(), model.getSparseSupportVectors(), scaler);
+        }
+        return new SvmModel(model.getKernel(), model.getB(),
+                model.getCoefficients(), model.getSupportVectors(), featureCount, scaler);
+    }
+
+    /**
+     * @return 两个有序序号数组的并集，有序
+     */
+    private static int[] union(int[] a, int[] b) {
+        int[] res = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            int v;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) v = a[i++];
+            else if (i >= a.length || b[j] < a[i]) v = b[j++];
+            else {
+                v = a[i++];
+                j++;
+            }
+            res[k++] = v;
+        }
+        return Arrays.copyOf(res, k);
+    }
+
+    /**
+     * 级联中的一份样本及其初始解
+     */
+    private static class Part {
+        //样本序号，有序
+        private final int[] idx;
+        //与idx对应的拉格朗日算子，为空时从0开始
+        private final double[] alpha;
+        private final double b;
+
+        private Part(int[] idx, double[] alpha, double b) {
+            this.idx = idx;
+            this.alpha = alpha;
+            this.b = b;
+        }
+
+        /**
+         * @param idx 训练器的样本序号
+         * @param svm 训练完成的训练器
+         * @return 支持向量组成的一份，序号仍然有序
+         */
+        private static Part ofSv(int[] idx, SupportVectorMachine svm) {
+            int[] local = svm.getSvIndices();
+            double[] coef = svm.getModel().getCoefficients();
+            int[] global = new int[local.length];
+            double[] alpha = new double[local.length];
+            for (int t = 0; t < local.length; t++) {
+                global[t] = idx[local[t]];
+                alpha[t] = Math.abs(coef[t]);
+            }
+            return new Part(global, alpha, svm.getModel().getB());
+        }
+
+        /**
+         * 两份不相交时直接合并两个解，相交时取两个解的平均值，都满足 sum(alphai*yi) = 0
+         */
+        private Part merge(Part other) {
+            int[] res = union(idx, other.idx);
+            boolean disjoint = res.length == idx.length + other.idx.length;
+            double scale = disjoint ? 1 : 0.5;
+            double[] resAlpha = new double[res.length];
+            addTo(res, resAlpha, scale);
+            other.addTo(res, resAlpha, scale);
+            return new Part(res, resAlpha, (b + other.b) / 2);
+        }
+
+        /**
+         * @return 加入part中的样本后的一份，新样本的算子为0
+         */
+        private Part extend(int[] part) {
+            int[] res = union(idx, part);
+            double[] resAlpha = new double[res.length];
+            addTo(res, resAlpha, 1);
+            return new Part(res, resAlpha, b);
+        }
+
+        private void addTo(int[] target, double[] targetAlpha, double scale) {
+            for (int t = 0, k = 0; t < idx.length; t++) {
+                while (target[k] != idx[t]) k++;
+                targetAlpha[k] += alpha[t] * scale;
+            }
+        }
+    }
+
+    /**
+     * @return 最近一次训练的级联轮数
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return 最后一轮结束时违反KKT条件的样本个数，为0时级联收敛到全局最优
+     */
+    public int getViolatorCount() {
+        return violatorCount;
+    }
+}
@@ -2,7 +2,9 @@ package jsvm;
 
 import Jama.Matrix;
 import jsvm.base.Kernelable;
+import jsvm.base.SparseMatrix;
 import jsvm.base.SupportVectorMachine;
+import jsvm.base.SvmModel;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -16,53 +18,38 @@ public class CostSensitiveSvm extends SupportVectorMachine implements Kernelable
     private double Cp;
     private double Cn;
 
-    //支持向量产生的w
-    private Matrix wSv;
-
-    //核函数参数
-    private double[] kernelParam;
-
     public CostSensitiveSvm(Matrix data, Matrix labels) {
         super(data, labels);
     }
 
+    public CostSensitiveSvm(SparseMatrix data, Matrix labels) {
+        super(data, labels);
+    }
+
     @Override
     protected double calcBoundC(int i) {
-        if (labels.get(i, 0) == 1) {
-            return Cn;
+        if (labels[i] == 1) {
+            return Cn * weight(i);
         } else {
-            return Cp;
+            return Cp * weight(i);
         }
     }
 
     @Override
-    public void train(int maxIteration, double... param) {
+    public SvmModel train(int maxIteration, double... param) {
         Cp = param[0];
         Cn = param[1];
         kernelParam = Arrays.copyOfRange(param, 2, param.length);
 
         //核函数转化矩阵K
         //m*m
-        for (int i = 0; i < sampleCount; i++) {
-            K.setMatrix(0, sampleCount - 1, i, i,
-                    kernelTrans(data, data.getMatrix(i, i, 0, featureCount - 1), kernelParam));
-        }
+        calcKernelMatrix();
 
         smo(maxIteration);
         calcSV();
         calcW();
 
-        //p*1
-        wSv = svLabelsMat.arrayTimes(svAlphasMat);
-    }
-
-    @Override
-    public int predict(Matrix x) {
-        Matrix X = kernelTrans(svMat, x, kernelParam);//p*1
-        double res = X.transpose().times(wSv).get(0, 0) + b;
-
-        if (res > 0) return 1;
-        else return -1;
+        return buildModel();
     }
 
     public static void main(String[] args) {
@@ -2,7 +2,9 @@ package jsvm;
 
 import Jama.Matrix;
 import jsvm.base.Kernelable;
+import jsvm.base.SparseMatrix;
 import jsvm.base.SupportVectorMachine;
+import jsvm.base.SvmModel;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -18,33 +20,28 @@ public class MarginCalibrationSvm extends SupportVectorMachine implements Kernel
     private double Ap;
     private double An;
 
-    //支持向量产生的w
-    private Matrix wSv;
-
-    //存放间隔支持向量信息
+    //间隔支持向量的个数
     private int msvCount;
-    private Matrix msvMat;
-    private Matrix msvLabelsMat;
-    private Matrix msvAlphasMat;
-
-    //核函数参数
-    private double[] kernelParam;
 
     public MarginCalibrationSvm(Matrix data, Matrix labels) {
         super(data, labels);
     }
 
+    public MarginCalibrationSvm(SparseMatrix data, Matrix labels) {
+        super(data, labels);
+    }
+
     @Override
     protected double calcBoundC(int i) {
-        if (labels.get(i, 0) == 1) {
-            return Cn * An;
+        if (labels[i] == 1) {
+            return Cn * An * weight(i);
         } else {
-            return Cp * Ap;
+            return Cp * Ap * weight(i);
         }
     }
 
     @Override
-    public void train(int maxIteration, double... param) {
+    public SvmModel train(int maxIteration, double... param) {
         Cp = param[0];
         Cn = param[1];
         Ap = param[2];
@@ -54,69 +51,20 @@ public class MarginCalibrationSvm extends SupportVectorMachine implements Kernel
 
         //核函数转化矩阵K
         //m*m
-        for (int i = 0; i < sampleCount; i++) {
-            K.setMatrix(0, sampleCount - 1, i, i,
-                    kernelTrans(data, data.getMatrix(i, i, 0, featureCount - 1), kernelParam));
-        }
+        calcKernelMatrix();
 
         smo(maxIteration);
         calcSV();
-
-        //p*1
-        wSv = svLabelsMat.arrayTimes(svAlphasMat);
-        calcMSV();
         calcW();
         calcLopsidedMargin();
-    }
-
-    @Override
-    public int predict(Matrix x) {
-        Matrix X = kernelTrans(svMat, x, kernelParam);//p*1
-        double res = X.transpose().times(wSv).get(0, 0) + b;
 
-        if (res > 0) return 1;
-        else return -1;
-    }
-
-    /**
-     * 计算间隔支持向量
-     */
-    private void calcMSV() {
-        //统计间隔支持向量的个数
-        int count = 0;
-        for (int i = 0; i < svCount; i++) {
-            double alpha = svAlphasMat.get(i, 0);
-            double C = calcBoundC(i);
-
-            if (alpha > 0 && alpha < C) {
-                //获得间隔支持向量
-                count++;
-            }
-        }
-
-        msvCount = count;
-        //初始化存放信息的矩阵
-        msvMat = new Matrix(msvCount, featureCount);
-        msvLabelsMat = new Matrix(msvCount, 1);
-        msvAlphasMat = new Matrix(msvCount, 1);
-
-        int msvSampleCount = 0;
-        for (int i = 0; i < sampleCount; i++) {
-            double C = calcBoundC(i);
-            double alphaI = alphas.get(i, 0);
-            if (alphaI > 0 && alphaI < C) {
-                //此时为间隔支持向量
-                msvMat.setMatrix(msvSampleCount, msvSampleCount, 0, featureCount - 1,
-                        data.getMatrix(i, i, 0, featureCount - 1));
-                msvLabelsMat.set(msvSampleCount, 0, labels.get(i, 0));
-                msvAlphasMat.set(msvSampleCount, 0, alphas.get(i, 0));
-                msvSampleCount++;
-            }
-        }
+        return buildModel();
     }
 
     /**
      * 通过计算边界漂移来修正决策边界
+     * 一次遍历全部样本，间隔支持向量(0 < alpha < C)的f(xi)直接由SMO维护的偏差得到，不需要计算核函数
+     * f(xi)不含b，与修正前的b无关
      */
     private void calcLopsidedMargin() {
         double bp = 0;
@@ -124,29 +72,35 @@ public class MarginCalibrationSvm extends SupportVectorMachine implements Kernel
         int bpCount = 0;
         int bnCount = 0;
 
-        for (int i = 0; i < msvCount; i++) {
-            double label = msvLabelsMat.get(i, 0);
-            Matrix x = msvMat.getMatrix(i, i, 0, featureCount - 1);
-            if (label == 1) {
+        for (int i = 0; i < sampleCount; i++) {
+            double alpha = alphas[i];
+            if (!(alpha > 0 && alpha < calcBoundC(i))) continue;
+            //间隔支持向量
+            double fxi = calcFxi(i);
+            if (labels[i] == 1) {
                 //正类
                 bpCount++;
-                bp += 1 / Ap - calcFxi(x);
+                bp += 1 / Ap - fxi;
             } else {
                 //负类
                 bnCount++;
-                bn += -An - -calcFxi(x);
+                bn += -An - -fxi;
             }
         }
+        msvCount = bpCount + bnCount;
 
         bp /= (bpCount * 1.0);
         bn /= (bnCount * 1.0);
 
-        b = (Ap * bp + An * bn) / (Ap + An);
+        //同时修正偏差，训练样本的决策值与修正后的模型一致
+        shiftBias((Ap * bp + An * bn) / (Ap + An) - b);
     }
 
-    private double calcFxi(Matrix x) {
-        Matrix X = kernelTrans(svMat, x, kernelParam);//p*1
-        return X.transpose().times(wSv).get(0, 0);
+    /**
+     * @return 最近一次训练中用于修正边界的间隔支持向量的个数
+     */
+    public int getMarginSvCount() {
+        return msvCount;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,260 @@
+package jsvm;
+
+import Jama.Matrix;
+import jsvm.base.FeatureScaler;
+import jsvm.base.KernelRowCache;
+import jsvm.base.MultiClassModel;
+import jsvm.base.SparseMatrix;
+import jsvm.base.SupportVectorMachine;
+import jsvm.base.SvmModel;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+/**
+ * 一对一多分类支持向量机
+ * c个类别两两组成c*(c-1)/2个二分类子问题，在多个线程中同时训练，
+ * 各个子问题使用同一个KernelRowCache，同一个样本的核函数行只计算一次
+ * 子问题中类别靠前的为正类(1)，靠后的为负类(-1)
+ */
+public class OneVsOneSvm {
+    //缓存的默认大小
+    private static final long DEFAULT_CACHE_BYTES = 256L << 20;
+
+    //样本集 - m*n，与sparseData只有一个不为空
+    private Matrix data;
+    private SparseMatrix sparseData;
+    //类别标签 - m*1
+    private final Matrix labels;
+    private final int sampleCount;
+    private final int featureCount;
+    //不同的类别，从小到大 - c
+    private final double[] classes;
+
+    private final BiFunction<Matrix, Matrix, ? extends SupportVectorMachine> denseFactory;
+    private final BiFunction<SparseMatrix, Matrix, ? extends SupportVectorMachine> sparseFactory;
+
+    private FeatureScaler scaler;
+    private int cacheRows;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private KernelRowCache cache;
+    private MultiClassModel model;
+
+    /**
+     * @param data    m*n
+     * @param labels  类别标签 m*1
+     * @param factory 创建二分类训练器，例如 CostSensitiveSvm::new
+     */
+    public OneVsOneSvm(Matrix data, Matrix labels, BiFunction<Matrix, Matrix, ? extends SupportVectorMachine> factory) {
+        this.data = data;
+        this.labels = labels;
+        this.sampleCount = data.getRowDimension();
+        this.featureCount = data.getColumnDimension();
+        this.classes = distinctClasses(labels);
+        this.denseFactory = factory;
+        this.sparseFactory = null;
+        this.cacheRows = defaultCacheRows();
+    }
+
+    /**
+     * @param data    稀疏样本集 m*n
+     * @param labels  类别标签 m*1
+     * @param factory 创建二分类训练器，例如 CostSensitiveSvm::new
+     */
+    public OneVsOneSvm(SparseMatrix data, Matrix labels,
+                       BiFunction<SparseMatrix, Matrix, ? extends SupportVectorMachine> factory) {
+        this.sparseData = data;
+        this.labels = labels;
+        this.sampleCount = data.getRowDimension();
+        this.featureCount = data.getColumnDimension();
+        this.classes = distinctClasses(labels);
+        this.denseFactory = null;
+        this.sparseFactory = factory;
+        this.cacheRows = defaultCacheRows();
+    }
+
+    private static double[] distinctClasses(Matrix labels) {
+        double[] classes = Arrays.stream(labels.getColumnPackedCopy()).distinct().sorted().toArray();
+        if (classes.length < 2) throw new IllegalArgumentException("类别个数少于2 : " + classes.length);
+        return classes;
+    }
+
+    private int defaultCacheRows() {
+        return (int) Math.max(1, Math.min(sampleCount, DEFAULT_CACHE_BYTES / 8 / Math.max(sampleCount, 1)));
+    }
+
+    /**
+     * 对所有样本进行归一化，需要在train之前调用
+     *
+     * @param type 归一化方式
+     * @return 归一化参数
+     */
+    public FeatureScaler normalize(FeatureScaler.Type type) {
+        if (sparseData == null) {
+            scaler = FeatureScaler.fit(data, type);
+            scaler.transformInPlace(data);
+        } else {
+            scaler = FeatureScaler.fit(sparseData, type);
+            sparseData = scaler.transform(sparseData);
+        }
+        return scaler;
+    }
+
+    /**
+     * @param cacheRows 共享缓存最多保存的核函数行数，每行m个double
+     */
+    public void setCacheRows(int cacheRows) {
+        this.cacheRows = cacheRows;
+    }
+
+    /**
+     * @param threads 同时训练的子问题个数
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param maxIteration 每个子问题的最大迭代次数
+     * @param param        二分类训练器的参数，所有子问题相同
+     * @return 模型
+     */
+    public MultiClassModel train(int maxIteration, double... param) {
+        int c = classes.length;
+        int pairCount = c * (c - 1) / 2;
+        int[] first = new int[pairCount];
+        int[] second = new int[pairCount];
+        for (int a = 0, k = 0; a < c; a++) {
+            for (int b = a + 1; b < c; b++, k++) {
+                first[k] = a;
+                second[k] = b;
+            }
+        }
+
+        cache = sparseData == null ? new KernelRowCache(data, cacheRows) : new KernelRowCache(sparseData, cacheRows);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, pairCount)));
+        int[][] sampleIdx = new int[pairCount][];
+        List<Future<SupportVectorMachine>> futures = new ArrayList<>();
+        try {
+            for (int k = 0; k < pairCount; k++) {
+                double classA = classes[first[k]];
+                double classB = classes[second[k]];
+                int[] idx = IntStream.range(0, sampleCount)
+                        .filter(i -> labels.get(i, 0) == classA || labels.get(i, 0) == classB).toArray();
+                sampleIdx[k] = idx;
+                futures.add(executor.submit(() -> trainPair(idx, classA, maxIteration, param)));
+            }
+
+            //合并所有子模型的支持向量
+            int[] unionOf = new int[sampleCount];
+            Arrays.fill(unionOf, -1);
+            int[] unionIdx = new int[sampleCount];
+            int unionCount = 0;
+            double[] b = new double[pairCount];
+            int[][] svRef = new int[pairCount][];
+            double[][] coef = new double[pairCount][];
+            for (int k = 0; k < pairCount; k++) {
+                SupportVectorMachine svm = futures.get(k).get();
+                SvmModel sub = svm.getModel();
+                int[] local = svm.getSvIndices();
+                b[k] = sub.getB();
+                coef[k] = sub.getCoefficients();
+                svRef[k] = new int[local.length];
+                for (int t = 0; t < local.length; t++) {
+                    int global = sampleIdx[k][local[t]];
+                    if (unionOf[global] < 0) {
+                        unionOf[global] = unionCount;
+                        unionIdx[unionCount++] = global;
+                    }
+                    svRef[k][t] = unionOf[global];
+                }
+            }
+
+            int[] svIdx = Arrays.copyOf(unionIdx, unionCount);
+            SvmModel anyModel = futures.get(0).get().getModel();
+            if (sparseData != null) {
+                model = new MultiClassModel(classes, anyModel.getKernel(),
+                        null, sparseData.selectRows(svIdx), featureCount, first, second, b, svRef, coef, scaler);
+            } else {
+                double[] svData = new double[unionCount * featureCount];
+                double[][] arr = data.getArray();
+                for (int r = 0; r < unionCount; r++) {
+                    System.arraycopy(arr[svIdx[r]], 0, svData, r * featureCount, featureCount);
+                }
+                model = new MultiClassModel(classes, anyModel.getKernel(),
+                        DoubleBuffer.wrap(svData), null, featureCount, first, second, b, svRef, coef, scaler);
+            }
+            return model;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("训练被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 训练classA与另一类的子问题
+     */
+    private SupportVectorMachine trainPair(int[] idx, double classA, int maxIteration, double[] param) {
+        Matrix subLabels = new Matrix(idx.length, 1);
+        for (int t = 0; t < idx.length; t++) {
+            subLabels.set(t, 0, labels.get(idx[t], 0) == classA ? 1 : -1);
+        }
+        SupportVectorMachine svm = sparseData == null
+                ? denseFactory.apply(data.getMatrix(idx, 0, featureCount - 1), subLabels)
+                : sparseFactory.apply(sparseData.selectRows(idx), subLabels);
+        svm.shareKernelCache(cache, idx);
+        svm.train(maxIteration, param);
+        return svm;
+    }
+
+    public MultiClassModel getModel() {
+        if (model == null) throw new IllegalStateException("模型尚未训练");
+        return model;
+    }
+
+    /**
+     * @return 最近一次训练使用的共享缓存
+     */
+    public KernelRowCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 并行评估
+     *
+     * @param x 输入 m*n
+     * @param y 类别标签 m*1
+     * @return 混淆矩阵 c*c，第i行第j列为类别i被预测为类别j的个数，类别顺序与model.getClasses()一致
+     */
+    public int[][] evaluate(Matrix x, Matrix y) {
+        MultiClassModel model = getModel();
+        double[][] arr = x.getArray();
+        double[] predicted = IntStream.range(0, x.getRowDimension()).parallel()
+                .mapToDouble(i -> model.predict(arr[i])).toArray();
+
+        HashMap<Double, Integer> classIdx = new HashMap<>();
+        for (int k = 0; k < classes.length; k++) classIdx.put(classes[k], k);
+        int[][] confusion = new int[classes.length][classes.length];
+        for (int i = 0; i < predicted.length; i++) {
+            Integer actual = classIdx.get(y.get(i, 0));
+            if (actual == null) throw new IllegalArgumentException("未知的类别 : " + y.get(i, 0));
+            confusion[actual][classIdx.get(predicted[i])]++;
+        }
+        return confusion;
+    }
+}
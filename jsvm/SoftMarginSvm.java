@@ -2,7 +2,9 @@ package jsvm;
 
 import Jama.Matrix;
 import jsvm.base.Kernelable;
+import jsvm.base.SparseMatrix;
 import jsvm.base.SupportVectorMachine;
+import jsvm.base.SvmModel;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -17,31 +19,30 @@ public class SoftMarginSvm extends SupportVectorMachine implements Kernelable {
     //正则参数
     private double C;
 
-    //支持向量产生的w
-    private Matrix wSv;
-
-    //核函数参数
-    private double[] kernelParam;
-
     public SoftMarginSvm(Matrix data, Matrix labels) {
         super(data, labels);
     }
 
+    public SoftMarginSvm(SparseMatrix data, Matrix labels) {
+        super(data, labels);
+    }
+
     /**
      * @param i 样本序号
      * @return 样本对应的边界
      */
     @Override
     protected double calcBoundC(int i) {
-        return C;
+        return C * weight(i);
     }
 
     /**
      * @param maxIteration 最大迭代次数
      * @param param        所需要的参数 C rbf-theta
+     * @return 训练得到的模型
      */
     @Override
-    public void train(int maxIteration, double... param) {
+    public SvmModel train(int maxIteration, double... param) {
         if (param.length != 2) System.out.println("参数长度不为2 ! param 的长度实际上为" + param.length);
 
         C = param[0];
@@ -49,31 +50,13 @@ public class SoftMarginSvm extends SupportVectorMachine implements Kernelable {
 
         //核函数转化矩阵K
         //m*m
-        for (int i = 0; i < sampleCount; i++) {
-            K.setMatrix(0, sampleCount - 1, i, i,
-                    kernelTrans(data, data.getMatrix(i, i, 0, featureCount - 1), kernelParam));
-        }
+        calcKernelMatrix();
 
         smo(maxIteration);
         calcSV();
         calcW();
 
-        //p*1
-        wSv = svLabelsMat.arrayTimes(svAlphasMat);
-    }
-
-    /**
-     * 单个样本的预测
-     *
-     * @param x 单个样本
-     * @return 预测标签
-     */
-    public int predict(Matrix x) {
-        Matrix X = kernelTrans(svMat, x, kernelParam);//p*1
-        double res = X.transpose().times(wSv).get(0, 0) + b;
-
-        if (res > 0) return 1;
-        else return -1;
+        return buildModel();
     }
 
 
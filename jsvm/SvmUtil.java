@@ -1,9 +1,18 @@
 package jsvm;
 
 import Jama.Matrix;
+import jsvm.base.EvaluationReport;
+import jsvm.base.SparseMatrix;
+import jsvm.base.SvmModel;
+import jsvm.base.SvmModelFile;
+import jsvm.data.BinaryDataSet;
+import jsvm.data.DataSet;
+import jsvm.data.FeaturePipeline;
+import jsvm.data.LibSvmFormat;
+import jsvm.data.ParallelSetLoader;
+import jsvm.data.SparseDataSet;
 
 import java.io.*;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -64,6 +73,47 @@ public class SvmUtil {
         return map;
     }
 
+    /**
+     * 并行加载样本集
+     * 文件被内存映射后按行切分为若干块，在所有核上并行解析
+     *
+     * @param fileName  fileName
+     * @param splitChar splitChar
+     * @return {data : Matrix data,labels(m*n) : Matrix labels(1*m)}
+     */
+    public static HashMap<String, Matrix> loadSetParallel(String fileName, String splitChar) {
+        return loadDataSetParallel(fileName, splitChar).toMap();
+    }
+
+    /**
+     * 并行加载样本集
+     *
+     * @param fileName  fileName
+     * @param splitChar splitChar
+     * @return 按行连续存放的样本集
+     */
+    public static DataSet loadDataSetParallel(String fileName, String splitChar) {
+        return loadDataSetParallel(fileName, splitChar, null);
+    }
+
+    /**
+     * 并行加载样本集，解析的同时进行特征转换
+     *
+     * @param fileName  fileName
+     * @param splitChar splitChar
+     * @param pipeline  特征转换流水线
+     * @return 按行连续存放的样本集
+     */
+    public static DataSet loadDataSetParallel(String fileName, String splitChar, FeaturePipeline pipeline) {
+        try {
+            return ParallelSetLoader.load(fileName, splitChar, pipeline);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            return new DataSet(0, 0, new double[0], new double[0]);
+        }
+    }
+
     /**
      * 将数据储存到硬盘
      *
@@ -87,11 +137,18 @@ public class SvmUtil {
         int m = data.getRowDimension();
         int n = data.getColumnDimension();
 
-        try (FileWriter fwr = new FileWriter(file)) {
+        double[][] arr = data.getArray();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            StringBuilder line = new StringBuilder();
             for (int i = 0; i < m; i++) {
-                String line = Arrays.toString(data.getMatrix(i, i, 0, n - 1).getArray()[0]);
-                line = line.substring(1, line.length() - 1) + "," + labels.get(0, i) + "\r\n";
-                fwr.write(line);
+                //与Arrays.toString的格式保持一致
+                line.setLength(0);
+                for (int j = 0; j < n; j++) {
+                    if (j > 0) line.append(", ");
+                    line.append(arr[i][j]);
+                }
+                line.append(",").append(labels.get(0, i)).append("\r\n");
+                bw.write(line.toString());
             }
         } catch (IOException e) {
             System.out.println(e.getMessage());
@@ -100,119 +157,118 @@ public class SvmUtil {
     }
 
     /**
-     * 对发动机的数据进行处理
+     * 将数据以二进制格式储存到硬盘
      *
-     * @param map map
-     * @return map
+     * @param map         map
+     * @param filePath    path
+     * @param floatValues 是否以float储存
      */
-    public static HashMap<String, Matrix> dataFilter(HashMap<String, Matrix> map) {
-        Matrix data = map.get("data");
-        Matrix labels = map.get("labels");
+    public static void saveDataToDiskBinary(HashMap<String, Matrix> map, String filePath, boolean floatValues) {
+        try {
+            BinaryDataSet.save(DataSet.fromMap(map), filePath, floatValues);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-        //0 1 2 3   4   5   6   7    8     9    10   11
-        //0 1 2 2/1 5/3 6/4 9/7 10/8 11/10 12/9 13/1 14
-        int m = data.getRowDimension();
-        int n = data.getColumnDimension();
+    /**
+     * 加载二进制格式的数据
+     * 文件按列内存映射，不需要解析
+     *
+     * @param filePath path
+     * @return {data : Matrix data,labels(m*n) : Matrix labels(1*m)}
+     */
+    public static HashMap<String, Matrix> loadBinarySet(String filePath) {
+        try {
+            return BinaryDataSet.open(filePath, false).toMap();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            return new DataSet(0, 0, new double[0], new double[0]).toMap();
+        }
+    }
 
-        Matrix newData = new Matrix(m, 12);
-        //0-油门杆角度、1-风扇转速、2-压气机转速
-        newData.setMatrix(0, m - 1, 0, 2, data.getMatrix(0, m - 1, 0, 2));
-
-        //3-压气机转速/风扇转速
-        newData.setMatrix(0, m - 1, 3, 3,
-                data.getMatrix(0, m - 1, 2, 2).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 1, 1)
-                ));
-
-        //4- 5/3
-        newData.setMatrix(0, m - 1, 4, 4,
-                data.getMatrix(0, m - 1, 5, 5).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 3, 3)
-                ));
-
-        //5- 6/4
-        newData.setMatrix(0, m - 1, 5, 5,
-                data.getMatrix(0, m - 1, 6, 6).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 4, 4)
-                ));
-
-        //6- 9/7
-        newData.setMatrix(0, m - 1, 6, 6,
-                data.getMatrix(0, m - 1, 9, 9).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 7, 7)
-                ));
-
-        //7- 10/8
-        newData.setMatrix(0, m - 1, 7, 7,
-                data.getMatrix(0, m - 1, 10, 10).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 8, 8)
-                ));
-
-        //8- 11/10
-        newData.setMatrix(0, m - 1, 8, 8,
-                data.getMatrix(0, m - 1, 11, 11).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 10, 10)
-                ));
-
-        //9- 12/9
-        newData.setMatrix(0, m - 1, 9, 9,
-                data.getMatrix(0, m - 1, 12, 12).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 9, 9)
-                ));
-
-        //10- 13/1
-        newData.setMatrix(0, m - 1, 10, 10,
-                data.getMatrix(0, m - 1, 13, 13).arrayRightDivide(
-                        data.getMatrix(0, m - 1, 1, 1)
-                ));
-
-        //11- 14
-        newData.setMatrix(0, m - 1, 11, 11,
-                data.getMatrix(0, m - 1, 14, 14));
-
-        boolean[] sampleAvailable = new boolean[m];
-        int count = 0;
-        for (int i = 0; i < m; i++) {
-            Matrix x = newData.getMatrix(i, i, 0, 11);
-            boolean flag = SvmUtil.isSampleAvailable(x);
-            sampleAvailable[i] = flag;
-            if (flag) count++;
-            else {
-                System.out.println("Unavailable :" + i);
-                x.print(x.getColumnDimension(), 5);
-            }
+    /**
+     * 加载LIBSVM格式的稀疏样本集
+     *
+     * @param fileName     fileName
+     * @param featureCount 特征个数，小于等于0时取文件中最大的特征序号
+     * @return 稀疏样本集
+     */
+    public static SparseDataSet loadLibSvmSet(String fileName, int featureCount) {
+        try {
+            return LibSvmFormat.read(fileName, featureCount);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            return new SparseDataSet(new SparseMatrix(0, Math.max(featureCount, 0), new int[1], new int[0],
+                    new double[0]), new double[0]);
         }
+    }
 
-        Matrix res = new Matrix(count, 12);
-        Matrix res_labels = new Matrix(1, count);
-        count = 0;
-        for (int i = 0; i < m; i++) {
-            if (sampleAvailable[i]) {
-                Matrix x = newData.getMatrix(i, i, 0, 11);
-                res.setMatrix(count, count, 0, 11, x);
-                res_labels.set(0, count, labels.get(0, i));
-                count++;
-            }
+    /**
+     * 以LIBSVM格式保存稀疏样本集
+     *
+     * @param dataSet  稀疏样本集
+     * @param filePath path
+     */
+    public static void saveLibSvmSet(SparseDataSet dataSet, String filePath) {
+        try {
+            LibSvmFormat.write(dataSet, filePath);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
         }
+    }
 
-        map.put("data", res);
-        map.put("labels", res_labels);
-        return map;
+    /**
+     * 将模型以二进制格式储存到硬盘
+     *
+     * @param model    模型
+     * @param filePath path
+     */
+    public static void saveModel(SvmModel model, String filePath) {
+        try {
+            SvmModelFile.save(model, filePath);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
     }
 
     /**
-     * 检查样本中的数据是否都合法
+     * 内存映射加载模型，不需要重新训练
      *
-     * @param x x
-     * @return 是否合法
+     * @param filePath path
+     * @return 模型，加载失败时为null
      */
-    private static boolean isSampleAvailable(Matrix x) {
-        double[] arr = x.getArray()[0];
-        for (double ele : arr) {
-            if (Double.isNaN(ele) || Double.isInfinite(ele))
-                return false;
+    public static SvmModel loadModel(String filePath) {
+        try {
+            return SvmModelFile.load(filePath);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            return null;
         }
-        return true;
+    }
+
+    /**
+     * 对发动机的数据进行处理
+     *
+     * @param map map
+     * @return map
+     */
+    public static HashMap<String, Matrix> dataFilter(HashMap<String, Matrix> map) {
+        int m = map.get("data").getRowDimension();
+        HashMap<String, Matrix> res = FeaturePipeline.engineFeatures().apply(map);
+
+        int unavailable = m - res.get("data").getRowDimension();
+        if (unavailable > 0) System.out.println("Unavailable count : " + unavailable);
+
+        map.put("data", res.get("data"));
+        map.put("labels", res.get("labels"));
+        return map;
     }
 
     public static void showSvmPerformance(Map<String, Integer> map) {
@@ -233,4 +289,14 @@ public class SvmUtil {
         System.out.println("精确率 、 召回率 、 F1值分别为：");
         System.out.println(P + " " + R + " " + PR);
     }
-}
\ No newline at end of file
+
+    /**
+     * @param report 评估结果
+     */
+    public static void showSvmPerformance(EvaluationReport report) {
+        System.out.println("精确率 、 召回率 、 F1值分别为：");
+        System.out.println(report.getPrecision() + " " + report.getRecall() + " " + report.getF1());
+        System.out.println("ROC-AUC 、 PR-AUC分别为：");
+        System.out.println(report.getRocAuc() + " " + report.getPrAuc());
+    }
+}
@@ -0,0 +1,266 @@
+package jsvm.base;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 训练前筛选可能成为支持向量的样本
+ * 远离决策边界的样本训练后算子为0，却同样占用K的一行并参与每次全集合遍历
+ * 每一类分别用k-means聚成若干簇，样本到最近的异类簇中心与最近的同类簇中心的距离之差作为
+ * 到边界的估计，每一类保留差值最小的keepRatio比例的样本
+ * 距离在输入空间计算，对RBF和线性核都是单调的近似
+ * 丢弃的样本在训练后由SupportVectorMachine.checkDiscarded检查KKT条件
+ */
+public class BoundaryFilter {
+    private int clustersPerClass = 16;
+    private int iterations = 10;
+    private double keepRatio = 0.3;
+    private long seed = 1;
+
+    /**
+     * @param clustersPerClass 每一类的簇数
+     * @return this
+     */
+    public BoundaryFilter clustersPerClass(int clustersPerClass) {
+        if (clustersPerClass < 1) throw new IllegalArgumentException("簇数必须大于0 : " + clustersPerClass);
+        this.clustersPerClass = clustersPerClass;
+        return this;
+    }
+
+    /**
+     * @param iterations k-means的迭代次数
+     * @return this
+     */
+    public BoundaryFilter iterations(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("迭代次数必须大于0 : " + iterations);
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * @param keepRatio 每一类保留的比例
+     * @return this
+     */
+    public BoundaryFilter keepRatio(double keepRatio) {
+        if (!(keepRatio > 0 && keepRatio <= 1)) throw new IllegalArgumentException("保留比例必须在(0, 1]之间 : " + keepRatio);
+        this.keepRatio = keepRatio;
+        return this;
+    }
+
+    /**
+     * @param seed 选择初始簇中心的随机种子
+     * @return this
+     */
+    public BoundaryFilter seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param data   样本 m*n
+     * @param labels 标签 - m
+     * @return 保留的样本序号，有序
+     */
+    public int[] select(DenseMatrix data, double[] labels) {
+        double[] arr = data.getData();
+        int n = data.cols();
+        return select(new Rows() {
+            @Override
+            public int count() {
+                return data.rows();
+            }
+
+            @Override
+            public double dot(int i, double[] c) {
+                return DenseMatrix.dot(arr, data.rowOffset(i), c, 0, n);
+            }
+
+            @Override
+            public double squaredNorm(int i) {
+                return DenseMatrix.dot(arr, data.rowOffset(i), arr, data.rowOffset(i), n);
+            }
+
+            @Override
+            public void addTo(int i, double[] c) {
+                DenseMatrix.axpy(1, arr, data.rowOffset(i), c, 0, n);
+            }
+        }, n, labels);
+    }
+
+    /**
+     * @param data   稀疏样本 m*n
+     * @param labels 标签 - m
+     * @return 保留的样本序号，有序
+     */
+    public int[] select(SparseMatrix data, double[] labels) {
+        return select(new Rows() {
+            @Override
+            public int count() {
+                return data.getRowDimension();
+            }
+
+            @Override
+            public double dot(int i, double[] c) {
+                return data.dot(i, c);
+            }
+
+            @Override
+            public double squaredNorm(int i) {
+                return data.squaredNorm(i);
+            }
+
+            @Override
+            public void addTo(int i, double[] c) {
+                data.addRowTo(i, 1, c);
+            }
+        }, data.getColumnDimension(), labels);
+    }
+
+    private int[] select(Rows rows, int n, double[] labels) {
+        int m = rows.count();
+        int[] pos = indicesOf(labels, 1);
+        int[] neg = indicesOf(labels, -1);
+        if (pos.length + neg.length != m) throw new IllegalArgumentException("标签必须为1或-1");
+        if (pos.length == 0 || neg.length == 0) return identity(m);
+
+        double[][] posCenters = kMeans(rows, n, pos);
+        double[][] negCenters = kMeans(rows, n, neg);
+        double[] posNorms = norms(posCenters);
+        double[] negNorms = norms(negCenters);
+
+        //到最近的异类中心的距离 - 到最近的同类中心的距离，越小越接近边界
+        double[] score = new double[m];
+        for (int i = 0; i < m; i++) {
+            boolean positive = labels[i] == 1;
+            double own = nearest(rows, i, positive ? posCenters : negCenters, positive ? posNorms : negNorms);
+            double other = nearest(rows, i, positive ? negCenters : posCenters, positive ? negNorms : posNorms);
+            score[i] = Math.sqrt(other) - Math.sqrt(own);
+        }
+
+        boolean[] keep = new boolean[m];
+        keepClosest(pos, score, keep);
+        keepClosest(neg, score, keep);
+        int count = 0;
+        for (boolean k : keep) if (k) count++;
+        int[] res = new int[count];
+        for (int i = 0, r = 0; i < m; i++) {
+            if (keep[i]) res[r++] = i;
+        }
+        return res;
+    }
+
+    private void keepClosest(int[] idx, double[] score, boolean[] keep) {
+        int count = (int) Math.ceil(idx.length * keepRatio);
+        Integer[] order = new Integer[idx.length];
+        for (int t = 0; t < idx.length; t++) order[t] = idx[t];
+        Arrays.sort(order, (a, b) -> Double.compare(score[a], score[b]));
+        for (int t = 0; t < count; t++) keep[order[t]] = true;
+    }
+
+    /**
+     * Lloyd迭代，初始中心为随机选择的不同样本
+     *
+     * @param idx 同一类的样本序号
+     * @return 簇中心 k*n
+     */
+    private double[][] kMeans(Rows rows, int n, int[] idx) {
+        int k = Math.min(clustersPerClass, idx.length);
+        int[] perm = idx.clone();
+        Random random = new Random(seed);
+        double[][] centers = new double[k][n];
+        for (int c = 0; c < k; c++) {
+            int s = c + random.nextInt(perm.length - c);
+            int tmp = perm[c];
+            perm[c] = perm[s];
+            perm[s] = tmp;
+            rows.addTo(perm[c], centers[c]);
+        }
+
+        int[] assign = new int[idx.length];
+        for (int iter = 0; iter < iterations; iter++) {
+            double[] centerNorms = norms(centers);
+            boolean changed = iter == 0;
+            for (int t = 0; t < idx.length; t++) {
+                int best = nearestCenter(rows, idx[t], centers, centerNorms);
+                if (best != assign[t]) changed = true;
+                assign[t] = best;
+            }
+            if (!changed) break;
+
+            double[][] sums = new double[k][n];
+            int[] counts = new int[k];
+            for (int t = 0; t < idx.length; t++) {
+                rows.addTo(idx[t], sums[assign[t]]);
+                counts[assign[t]]++;
+            }
+            for (int c = 0; c < k; c++) {
+                //空簇保留原来的中心
+                if (counts[c] == 0) continue;
+                for (int j = 0; j < n; j++) centers[c][j] = sums[c][j] / counts[c];
+            }
+        }
+        return centers;
+    }
+
+    private static int nearestCenter(Rows rows, int i, double[][] centers, double[] centerNorms) {
+        int best = 0;
+        double bestD = Double.MAX_VALUE;
+        for (int c = 0; c < centers.length; c++) {
+            double d = centerNorms[c] - 2 * rows.dot(i, centers[c]);
+            if (d < bestD) {
+                bestD = d;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 到最近中心的距离的平方
+     */
+    private static double nearest(Rows rows, int i, double[][] centers, double[] centerNorms) {
+        double xx = rows.squaredNorm(i);
+        double best = Double.MAX_VALUE;
+        for (int c = 0; c < centers.length; c++) {
+            best = Math.min(best, xx + centerNorms[c] - 2 * rows.dot(i, centers[c]));
+        }
+        return Math.max(0, best);
+    }
+
+    private static double[] norms(double[][] centers) {
+        double[] res = new double[centers.length];
+        for (int c = 0; c < centers.length; c++) {
+            res[c] = DenseMatrix.dot(centers[c], 0, centers[c], 0, centers[c].length);
+        }
+        return res;
+    }
+
+    private static int[] indicesOf(double[] labels, double label) {
+        int count = 0;
+        for (double y : labels) if (y == label) count++;
+        int[] res = new int[count];
+        for (int i = 0, r = 0; i < labels.length; i++) {
+            if (labels[i] == label) res[r++] = i;
+        }
+        return res;
+    }
+
+    private static int[] identity(int m) {
+        int[] res = new int[m];
+        for (int i = 0; i < m; i++) res[i] = i;
+        return res;
+    }
+
+    /**
+     * 稠密和稀疏样本的按行访问
+     */
+    private interface Rows {
+        int count();
+
+        double dot(int i, double[] c);
+
+        double squaredNorm(int i);
+
+        void addTo(int i, double[] c);
+    }
+}
@@ -0,0 +1,87 @@
+package jsvm.base;
+
+import java.util.Arrays;
+
+/**
+ * 完整计算并保存的矩阵K - m*m
+ * 可以追加样本，每一列预留空间，追加时只需要计算新样本与全部样本的核函数，已有的值不重新计算
+ */
+public class DenseKernelMatrix implements KernelMatrix {
+    //K是对称的，第i行即第i列，每一列的长度不小于size
+    private double[][] columns;
+    private int size;
+
+    /**
+     * @param columns K的每一列 - m*m
+     */
+    public DenseKernelMatrix(double[][] columns) {
+        this.columns = columns;
+        this.size = columns.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return columns[i][j];
+    }
+
+    /**
+     * @return 第i列，长度可能大于size，只有前size个有效
+     */
+    @Override
+    public double[] column(int i) {
+        return columns[i];
+    }
+
+    /**
+     * 追加k个样本
+     *
+     * @param newColumns 新样本的列 k*(m+k)，前m个为与已有样本的核函数，后k个为新样本之间的核函数
+     */
+    public void append(double[][] newColumns) {
+        int k = newColumns.length;
+        int newSize = size + k;
+        for (double[] column : newColumns) {
+            if (column.length != newSize) throw new IllegalArgumentException("列的长度不一致 : " + column.length + " , " + newSize);
+        }
+
+        //容量不足时按1.5倍扩充，均摊后每次追加只复制O(m*k)
+        int capacity = size == 0 ? newSize : columns[0].length;
+        if (capacity < newSize) capacity = Math.max(newSize, capacity + (capacity >> 1));
+        if (columns.length < newSize) columns = Arrays.copyOf(columns, Math.max(newSize, columns.length + (columns.length >> 1)));
+
+        for (int i = 0; i < size; i++) {
+            if (columns[i].length < newSize) columns[i] = Arrays.copyOf(columns[i], capacity);
+            for (int t = 0; t < k; t++) {
+                columns[i][size + t] = newColumns[t][i];
+            }
+        }
+        for (int t = 0; t < k; t++) {
+            columns[size + t] = Arrays.copyOf(newColumns[t], capacity);
+        }
+        size = newSize;
+    }
+
+    /**
+     * 去掉部分样本，剩余的值不重新计算
+     *
+     * @param keep 保留的样本序号，有序
+     */
+    public void retain(int[] keep) {
+        double[][] res = new double[keep.length][];
+        for (int r = 0; r < keep.length; r++) {
+            double[] column = columns[keep[r]];
+            double[] compact = new double[keep.length];
+            for (int c = 0; c < keep.length; c++) {
+                compact[c] = column[keep[c]];
+            }
+            res[r] = compact;
+        }
+        columns = res;
+        size = keep.length;
+    }
+}
@@ -0,0 +1,296 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.util.Arrays;
+
+/**
+ * 按行连续存放的稠密矩阵，训练和核函数计算的内部表示
+ * Jama的Matrix以double[][]存放，取一行、转置、相乘都会分配并复制，
+ * 这里所有运算直接在一个double[]上进行，需要结果的运算写入调用者提供的数组
+ * 对外的接口仍然使用Jama的Matrix，输入在边界处用fromJama转换，内部结果不再转换回Matrix
+ */
+public final class DenseMatrix {
+    //gemm分块的大小，一块A和一块B的行同时放在L1/L2缓存中
+    private static final int BLOCK_ROWS = 64;
+    private static final int BLOCK_COLS = 256;
+
+    private final int rows;
+    private final int cols;
+    //第i行第j列为data[i * cols + j]
+    private final double[] data;
+
+    public DenseMatrix(int rows, int cols) {
+        this(new double[Math.multiplyExact(rows, cols)], rows, cols);
+    }
+
+    /**
+     * 不复制data
+     *
+     * @param data rows*cols 按行连续存放
+     */
+    public DenseMatrix(double[] data, int rows, int cols) {
+        if (data.length != (long) rows * cols) {
+            throw new IllegalArgumentException("数组长度不一致 : " + data.length + " , " + rows + "*" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.data = data;
+    }
+
+    public static DenseMatrix fromJama(Matrix m) {
+        return new DenseMatrix(m.getRowPackedCopy(), m.getRowDimension(), m.getColumnDimension());
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * @return 底层数组，不复制
+     */
+    public double[] getData() {
+        return data;
+    }
+
+    /**
+     * @return 第i行在getData()中的起始位置
+     */
+    public int rowOffset(int i) {
+        return i * cols;
+    }
+
+    public double get(int i, int j) {
+        return data[i * cols + j];
+    }
+
+    public void set(int i, int j, double value) {
+        data[i * cols + j] = value;
+    }
+
+    /**
+     * @param buf 长度为cols的缓存
+     * @return buf
+     */
+    public double[] row(int i, double[] buf) {
+        System.arraycopy(data, i * cols, buf, 0, cols);
+        return buf;
+    }
+
+    /**
+     * @param idx 行号
+     * @return 由这些行组成的新矩阵
+     */
+    public DenseMatrix selectRows(int[] idx) {
+        double[] res = new double[Math.multiplyExact(idx.length, cols)];
+        for (int r = 0; r < idx.length; r++) {
+            System.arraycopy(data, idx[r] * cols, res, r * cols, cols);
+        }
+        return new DenseMatrix(res, idx.length, cols);
+    }
+
+    /**
+     * @return 在下方追加other的行得到的新矩阵
+     */
+    public DenseMatrix appendRows(DenseMatrix other) {
+        if (other.cols != cols) throw new IllegalArgumentException("列数不一致 : " + cols + " , " + other.cols);
+        double[] res = Arrays.copyOf(data, Math.addExact(data.length, other.data.length));
+        System.arraycopy(other.data, 0, res, data.length, other.data.length);
+        return new DenseMatrix(res, rows + other.rows, cols);
+    }
+
+    /**
+     * @return 每一行的平方和 - rows
+     */
+    public double[] rowSquaredNorms() {
+        double[] res = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            res[i] = dot(data, i * cols, data, i * cols, cols);
+        }
+        return res;
+    }
+
+    /**
+     * @return a[aOff..aOff+n) * b[bOff..bOff+n)
+     */
+    public static double dot(double[] a, int aOff, double[] b, int bOff, int n) {
+        //4路展开，减少累加的依赖链
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int k = 0;
+        for (; k + 3 < n; k += 4) {
+            s0 += a[aOff + k] * b[bOff + k];
+            s1 += a[aOff + k + 1] * b[bOff + k + 1];
+            s2 += a[aOff + k + 2] * b[bOff + k + 2];
+            s3 += a[aOff + k + 3] * b[bOff + k + 3];
+        }
+        for (; k < n; k++) {
+            s0 += a[aOff + k] * b[bOff + k];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * a与b中从bOff开始的连续4行的内积，a的每个元素只读取一次
+     * 每个内积的累加顺序与dot相同，结果完全一致
+     *
+     * @param c 输出 c[cOff..cOff+4)
+     */
+    private static void dot4(double[] a, int aOff, double[] b, int bOff, int n, double[] c, int cOff) {
+        int b1 = bOff + n;
+        int b2 = b1 + n;
+        int b3 = b2 + n;
+        double p0 = 0, p1 = 0, p2 = 0, p3 = 0;
+        double q0 = 0, q1 = 0, q2 = 0, q3 = 0;
+        double r0 = 0, r1 = 0, r2 = 0, r3 = 0;
+        double t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+        int k = 0;
+        for (; k + 3 < n; k += 4) {
+            double x0 = a[aOff + k];
+            double x1 = a[aOff + k + 1];
+            double x2 = a[aOff + k + 2];
+            double x3 = a[aOff + k + 3];
+            p0 += x0 * b[bOff + k];
+            p1 += x1 * b[bOff + k + 1];
+            p2 += x2 * b[bOff + k + 2];
+            p3 += x3 * b[bOff + k + 3];
+            q0 += x0 * b[b1 + k];
+            q1 += x1 * b[b1 + k + 1];
+            q2 += x2 * b[b1 + k + 2];
+            q3 += x3 * b[b1 + k + 3];
+            r0 += x0 * b[b2 + k];
+            r1 += x1 * b[b2 + k + 1];
+            r2 += x2 * b[b2 + k + 2];
+            r3 += x3 * b[b2 + k + 3];
+            t0 += x0 * b[b3 + k];
+            t1 += x1 * b[b3 + k + 1];
+            t2 += x2 * b[b3 + k + 2];
+            t3 += x3 * b[b3 + k + 3];
+        }
+        for (; k < n; k++) {
+            double x = a[aOff + k];
+            p0 += x * b[bOff + k];
+            q0 += x * b[b1 + k];
+            r0 += x * b[b2 + k];
+            t0 += x * b[b3 + k];
+        }
+        c[cOff] = (p0 + p1) + (p2 + p3);
+        c[cOff + 1] = (q0 + q1) + (q2 + q3);
+        c[cOff + 2] = (r0 + r1) + (r2 + r3);
+        c[cOff + 3] = (t0 + t1) + (t2 + t3);
+    }
+
+    /**
+     * @return ||a[aOff..aOff+n) - b[bOff..bOff+n)||^2
+     */
+    public static double squaredDistance(double[] a, int aOff, double[] b, int bOff, int n) {
+        double s0 = 0, s1 = 0;
+        int k = 0;
+        for (; k + 1 < n; k += 2) {
+            double d0 = a[aOff + k] - b[bOff + k];
+            double d1 = a[aOff + k + 1] - b[bOff + k + 1];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+        }
+        if (k < n) {
+            double d = a[aOff + k] - b[bOff + k];
+            s0 += d * d;
+        }
+        return s0 + s1;
+    }
+
+    /**
+     * y[yOff..yOff+n) += alpha * x[xOff..xOff+n)
+     */
+    public static void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int n) {
+        if (alpha == 0) return;
+        for (int k = 0; k < n; k++) {
+            y[yOff + k] += alpha * x[xOff + k];
+        }
+    }
+
+    /**
+     * y = alpha * A * x + beta * y
+     *
+     * @param x cols
+     * @param y rows
+     */
+    public void gemv(double alpha, double[] x, double beta, double[] y) {
+        for (int i = 0; i < rows; i++) {
+            double s = dot(data, i * cols, x, 0, cols);
+            y[i] = alpha * s + (beta == 0 ? 0 : beta * y[i]);
+        }
+    }
+
+    /**
+     * y = alpha * A' * x + beta * y，按行累加，不需要转置
+     *
+     * @param x rows
+     * @param y cols
+     */
+    public void gemvT(double alpha, double[] x, double beta, double[] y) {
+        if (beta == 0) Arrays.fill(y, 0, cols, 0);
+        else if (beta != 1) for (int j = 0; j < cols; j++) y[j] *= beta;
+        for (int i = 0; i < rows; i++) {
+            axpy(alpha * x[i], data, i * cols, y, 0, cols);
+        }
+    }
+
+    /**
+     * C = A[aFrom, aTo) * B[bFrom, bTo)'，即两组行两两的内积
+     * 按行分块，一块B的行在缓存中时与一块A的所有行计算，避免重复从内存读取B
+     *
+     * @param c 输出 (aTo-aFrom)*(bTo-bFrom) 按行连续存放
+     */
+    public static void gemmNT(DenseMatrix a, int aFrom, int aTo, DenseMatrix b, int bFrom, int bTo, double[] c) {
+        if (a.cols != b.cols) throw new IllegalArgumentException("列数不一致 : " + a.cols + " , " + b.cols);
+        int n = a.cols;
+        int width = bTo - bFrom;
+        for (int i0 = aFrom; i0 < aTo; i0 += BLOCK_ROWS) {
+            int i1 = Math.min(aTo, i0 + BLOCK_ROWS);
+            for (int j0 = bFrom; j0 < bTo; j0 += BLOCK_COLS) {
+                int j1 = Math.min(bTo, j0 + BLOCK_COLS);
+                for (int i = i0; i < i1; i++) {
+                    int out = (i - aFrom) * width - bFrom;
+                    int aOff = i * n;
+                    int j = j0;
+                    for (; j + 3 < j1; j += 4) {
+                        dot4(a.data, aOff, b.data, j * n, n, c, out + j);
+                    }
+                    for (; j < j1; j++) {
+                        c[out + j] = dot(a.data, aOff, b.data, j * n, n);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * C = alpha * A * B + beta * C，分块的i-k-j顺序，最内层连续访问B和C的行
+     *
+     * @param c A.rows*B.cols
+     */
+    public static void gemm(double alpha, DenseMatrix a, DenseMatrix b, double beta, DenseMatrix c) {
+        if (a.cols != b.rows || c.rows != a.rows || c.cols != b.cols) {
+            throw new IllegalArgumentException("维度不一致 : " + a.rows + "*" + a.cols + " , "
+                    + b.rows + "*" + b.cols + " , " + c.rows + "*" + c.cols);
+        }
+        int m = a.rows, n = b.cols, p = a.cols;
+        if (beta == 0) Arrays.fill(c.data, 0);
+        else if (beta != 1) for (int t = 0; t < c.data.length; t++) c.data[t] *= beta;
+        for (int i0 = 0; i0 < m; i0 += BLOCK_ROWS) {
+            int i1 = Math.min(m, i0 + BLOCK_ROWS);
+            for (int k0 = 0; k0 < p; k0 += BLOCK_COLS) {
+                int k1 = Math.min(p, k0 + BLOCK_COLS);
+                for (int i = i0; i < i1; i++) {
+                    for (int k = k0; k < k1; k++) {
+                        axpy(alpha * a.data[i * p + k], b.data, k * n, c.data, i * n, n);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package jsvm.base;
+
+/**
+ * 由内积(以及两个样本各自的平方和)决定的核函数
+ * 一块对一块先用分块的gemm计算内积再逐个变换，稀疏样本的平方和已在SparseMatrix中预先计算
+ */
+public abstract class DotProductKernel implements Kernel {
+    private final double[] param;
+
+    protected DotProductKernel(double[] param) {
+        this.param = param.clone();
+    }
+
+    /**
+     * @param dot 两个样本的内积
+     * @param aa  样本a的平方和，usesNorms为false时为0
+     * @param bb  样本b的平方和，usesNorms为false时为0
+     * @return k(a, b)
+     */
+    protected abstract double fromDot(double dot, double aa, double bb);
+
+    /**
+     * @return fromDot是否需要平方和
+     */
+    protected boolean usesNorms() {
+        return false;
+    }
+
+    @Override
+    public double[] param() {
+        return param.clone();
+    }
+
+    @Override
+    public double apply(double[] a, int aOff, double[] b, int bOff, int n) {
+        double dot = DenseMatrix.dot(a, aOff, b, bOff, n);
+        if (!usesNorms()) return fromDot(dot, 0, 0);
+        return fromDot(dot, DenseMatrix.dot(a, aOff, a, aOff, n), DenseMatrix.dot(b, bOff, b, bOff, n));
+    }
+
+    @Override
+    public double apply(SparseMatrix a, int i, SparseMatrix b, int k) {
+        return fromDot(a.dot(i, b, k), a.squaredNorm(i), b.squaredNorm(k));
+    }
+
+    @Override
+    public double[] norms(DenseMatrix X) {
+        return usesNorms() ? X.rowSquaredNorms() : null;
+    }
+
+    @Override
+    public void rows(DenseMatrix X, double[] norms, int from, int to, double[] x, int off, double[] out) {
+        if (usesNorms() && norms == null) {
+            Kernel.super.rows(X, null, from, to, x, off, out);
+            return;
+        }
+        double[] data = X.getData();
+        int n = X.cols();
+        double xx = usesNorms() ? DenseMatrix.dot(x, off, x, off, n) : 0;
+        for (int r = from; r < to; r++) {
+            out[r - from] = fromDot(DenseMatrix.dot(data, X.rowOffset(r), x, off, n), norms == null ? 0 : norms[r], xx);
+        }
+    }
+
+    @Override
+    public void block(DenseMatrix A, double[] aNorms, int aFrom, int aTo,
+                      DenseMatrix B, double[] bNorms, int bFrom, int bTo, double[] out) {
+        DenseMatrix.gemmNT(A, aFrom, aTo, B, bFrom, bTo, out);
+        boolean useNorms = usesNorms();
+        if (useNorms && aNorms == null) aNorms = A.rowSquaredNorms();
+        if (useNorms && bNorms == null) bNorms = B.rowSquaredNorms();
+        int width = bTo - bFrom;
+        for (int i = aFrom; i < aTo; i++) {
+            int base = (i - aFrom) * width - bFrom;
+            double aa = useNorms ? aNorms[i] : 0;
+            for (int j = bFrom; j < bTo; j++) {
+                out[base + j] = fromDot(out[base + j], aa, useNorms ? bNorms[j] : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package jsvm.base;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 查找重复的样本
+ * 特征和标签都相同的样本为一组，quantum大于0时特征先按quantum取整，近似相同的样本也归为一组
+ * 组按第一个样本出现的顺序编号
+ */
+final class DuplicateRows {
+    //每个样本所在的组 - m
+    final int[] groupOf;
+    //每组的第一个样本 - g，有序
+    final int[] first;
+    //每组的样本个数 - g
+    final double[] counts;
+
+    private DuplicateRows(int[] groupOf, int[] first, double[] counts) {
+        this.groupOf = groupOf;
+        this.first = first;
+        this.counts = counts;
+    }
+
+    int groupCount() {
+        return first.length;
+    }
+
+    /**
+     * @param data    样本 m*n
+     * @param labels  标签 - m
+     * @param quantum 取整的精度，不大于0时只合并完全相同的样本
+     */
+    static DuplicateRows of(DenseMatrix data, double[] labels, double quantum) {
+        int m = data.rows();
+        int n = data.cols();
+        double[] arr = data.getData();
+        Grouper grouper = new Grouper(m);
+        long[] key = new long[n + 1];
+        for (int i = 0; i < m; i++) {
+            int off = data.rowOffset(i);
+            for (int j = 0; j < n; j++) key[j] = quantize(arr[off + j], quantum);
+            key[n] = Double.doubleToLongBits(labels[i]);
+            grouper.add(i, key);
+        }
+        return grouper.build();
+    }
+
+    /**
+     * @param data    稀疏样本 m*n
+     * @param labels  标签 - m
+     * @param quantum 取整的精度，不大于0时只合并完全相同的样本
+     */
+    static DuplicateRows of(SparseMatrix data, double[] labels, double quantum) {
+        int m = data.getRowDimension();
+        int[] rowPtr = data.getRowPointers();
+        int[] colIdx = data.getColumnIndices();
+        double[] values = data.getValues();
+        Grouper grouper = new Grouper(m);
+        for (int i = 0; i < m; i++) {
+            //列序号和取整后的值交替存放，取整后为0的元素与不存在的元素相同
+            long[] key = new long[2 * (rowPtr[i + 1] - rowPtr[i]) + 1];
+            int len = 0;
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                long q = quantize(values[p], quantum);
+                if (q == 0) continue;
+                key[len++] = colIdx[p];
+                key[len++] = q;
+            }
+            key[len++] = Double.doubleToLongBits(labels[i]);
+            grouper.add(i, Arrays.copyOf(key, len));
+        }
+        return grouper.build();
+    }
+
+    private static long quantize(double v, double quantum) {
+        if (quantum > 0) return Math.round(v / quantum);
+        //-0.0与0.0视为相同
+        return v == 0 ? 0 : Double.doubleToLongBits(v);
+    }
+
+    private static final class Grouper {
+        private final HashMap<Key, Integer> groups = new HashMap<>();
+        private final int[] groupOf;
+        private final int[] first;
+        private final double[] counts;
+
+        private Grouper(int m) {
+            groupOf = new int[m];
+            first = new int[m];
+            counts = new double[m];
+        }
+
+        private void add(int i, long[] key) {
+            int g = groups.size();
+            Integer prev = groups.putIfAbsent(new Key(key), g);
+            if (prev == null) {
+                first[g] = i;
+            } else {
+                g = prev;
+            }
+            groupOf[i] = g;
+            counts[g]++;
+        }
+
+        private DuplicateRows build() {
+            int g = groups.size();
+            return new DuplicateRows(groupOf, Arrays.copyOf(first, g), Arrays.copyOf(counts, g));
+        }
+    }
+
+    private static final class Key {
+        private final long[] values;
+        private final int hash;
+
+        private Key(long[] values) {
+            this.values = values.clone();
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && Arrays.equals(values, ((Key) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package jsvm.base;
+
+import java.util.HashMap;
+
+/**
+ * 评估结果，可以逐个样本累积，多个线程各自累积后再合并
+ * 除混淆矩阵外，按决策值分桶统计正负样本个数，用于计算ROC-AUC和PR-AUC，
+ * 内存占用与样本个数无关
+ * <p>
+ * 决策值先映射为 sign(f)*ln(1+|f|)，再在[-LIMIT, LIMIT]内均匀分桶，
+ * |f| < 1e6 时同一个桶内决策值的相对差距约为0.2%，落在同一个桶内的正负样本按各一半计入AUC
+ */
+public class EvaluationReport {
+    private static final int BINS = 1 << 14;
+    private static final double LIMIT = Math.log1p(1e6);
+
+    private long TP;
+    private long TN;
+    private long FP;
+    private long FN;
+    //每个桶内正样本、负样本的个数
+    private final long[] positiveBins = new long[BINS];
+    private final long[] negativeBins = new long[BINS];
+
+    /**
+     * @param label 标签，1为正样本
+     * @param f     决策值 f(x) + b，大于0预测为正样本
+     */
+    public void add(double label, double f) {
+        boolean positive = label == 1;
+        boolean predicted = f > 0;
+        if (positive) {
+            if (predicted) TP++;
+            else FN++;
+            positiveBins[binOf(f)]++;
+        } else {
+            if (predicted) FP++;
+            else TN++;
+            negativeBins[binOf(f)]++;
+        }
+    }
+
+    private static int binOf(double f) {
+        if (Double.isNaN(f)) return 0;
+        double v = Math.signum(f) * Math.log1p(Math.abs(f));
+        int bin = (int) ((v + LIMIT) / (2 * LIMIT) * BINS);
+        return Math.max(0, Math.min(BINS - 1, bin));
+    }
+
+    /**
+     * @param other 另一部分样本的评估结果
+     * @return this
+     */
+    public EvaluationReport merge(EvaluationReport other) {
+        TP += other.TP;
+        TN += other.TN;
+        FP += other.FP;
+        FN += other.FN;
+        for (int i = 0; i < BINS; i++) {
+            positiveBins[i] += other.positiveBins[i];
+            negativeBins[i] += other.negativeBins[i];
+        }
+        return this;
+    }
+
+    /**
+     * 决策值从高到低遍历，每个负样本贡献排在它前面的正样本个数
+     *
+     * @return ROC曲线下面积
+     */
+    public double getRocAuc() {
+        long P = TP + FN;
+        long N = TN + FP;
+        if (P == 0 || N == 0) return Double.NaN;
+        double area = 0;
+        long above = 0;
+        for (int i = BINS - 1; i >= 0; i--) {
+            area += negativeBins[i] * (above + positiveBins[i] / 2.0);
+            above += positiveBins[i];
+        }
+        return area / P / N;
+    }
+
+    /**
+     * 平均精确率，以每个桶为阈值，按召回率的增量对精确率加权求和
+     *
+     * @return PR曲线下面积
+     */
+    public double getPrAuc() {
+        long P = TP + FN;
+        if (P == 0) return Double.NaN;
+        double area = 0;
+        long tp = 0;
+        long fp = 0;
+        for (int i = BINS - 1; i >= 0; i--) {
+            if (positiveBins[i] == 0 && negativeBins[i] == 0) continue;
+            tp += positiveBins[i];
+            fp += negativeBins[i];
+            area += positiveBins[i] * 1.0 / P * tp / (tp + fp);
+        }
+        return area;
+    }
+
+    /**
+     * @return 精确率
+     */
+    public double getPrecision() {
+        return TP * 1.0 / (TP + FP);
+    }
+
+    /**
+     * @return 召回率
+     */
+    public double getRecall() {
+        return TP * 1.0 / (TP + FN);
+    }
+
+    public double getF1() {
+        double P = getPrecision();
+        double R = getRecall();
+        return 2 * P * R / (P + R);
+    }
+
+    public double getAccuracy() {
+        return (TP + TN) * 1.0 / getSampleCount();
+    }
+
+    public long getSampleCount() {
+        return TP + TN + FP + FN;
+    }
+
+    public long getTP() {
+        return TP;
+    }
+
+    public long getTN() {
+        return TN;
+    }
+
+    public long getFP() {
+        return FP;
+    }
+
+    public long getFN() {
+        return FN;
+    }
+
+    /**
+     * @return TP TN FP FN ---> Map，键与evaluate的返回值一致
+     */
+    public HashMap<String, Long> toMap() {
+        HashMap<String, Long> map = new HashMap<>();
+        map.put("TP", TP);
+        map.put("TN", TN);
+        map.put("FP", FP);
+        map.put("FN", FN);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "TP=" + TP + " TN=" + TN + " FP=" + FP + " FN=" + FN
+                + " , P=" + getPrecision() + " R=" + getRecall() + " F1=" + getF1()
+                + " , ROC-AUC=" + getRocAuc() + " PR-AUC=" + getPrAuc();
+    }
+}
@@ -0,0 +1,54 @@
+package jsvm.base;
+
+/**
+ * 快速的exp，RBF_FAST核函数使用
+ * exp(x) = 2^q * 2^(j/256) * exp(r)，其中 x = (256*q + j) * ln2/256 + r，|r| <= ln2/512
+ * 2^(j/256)查表，exp(r)用三次多项式近似，截断误差不超过 r^4/24 < 1.5e-13
+ * 在 [-708, 709.78] 内最大相对误差不超过 MAX_RELATIVE_ERROR，由FastMathTest验证
+ * x < -708 时返回0(Math.exp的结果为次正规数，绝对误差小于1e-307)，x > 709.78 时返回Infinity
+ */
+public final class FastMath {
+    //文档中保证的最大相对误差
+    public static final double MAX_RELATIVE_ERROR = 2e-13;
+
+    private static final int TABLE_BITS = 8;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    //2^(j/256) - 256
+    private static final double[] TABLE = new double[TABLE_SIZE];
+    private static final double INV_STEP = TABLE_SIZE / Math.log(2);
+    //ln2/256拆成高低两部分(fdlibm中的ln2_hi、ln2_lo)，高位部分只有32位有效数字，与k相乘没有舍入误差，
+    //低位部分补足ln2的精度，否则x接近MAX_ARG时r的误差会使结果溢出为Infinity
+    private static final double STEP_HI = 6.93147180369123816490e-01 / TABLE_SIZE;
+    private static final double STEP_LO = 1.90821492927058770002e-10 / TABLE_SIZE;
+    private static final double MIN_ARG = -708;
+    private static final double MAX_ARG = 709.782712893384;
+
+    static {
+        for (int j = 0; j < TABLE_SIZE; j++) {
+            TABLE[j] = Math.pow(2, j / (double) TABLE_SIZE);
+        }
+    }
+
+    private FastMath() {
+    }
+
+    /**
+     * @param x 指数
+     * @return 近似的e^x，相对误差不超过MAX_RELATIVE_ERROR
+     */
+    public static double exp(double x) {
+        if (!(x >= MIN_ARG)) return x != x ? x : 0;
+        if (x > MAX_ARG) return Double.POSITIVE_INFINITY;
+
+        //四舍五入，比Math.floor快，RBF中x总是负数，分支可以预测
+        long k = (long) (x * INV_STEP + (x < 0 ? -0.5 : 0.5));
+        double r = (x - k * STEP_HI) - k * STEP_LO;
+        //k为负数时算术右移即向下取整，j在[0, 256)之间
+        long q = k >> TABLE_BITS;
+        int j = (int) (k & (TABLE_SIZE - 1));
+        double p = 1 + r * (1 + r * (0.5 + r * (1.0 / 6)));
+        //q在[-1022, 1024]内，直接构造2^q，x接近MAX_ARG时q为1024，超出指数范围，分成2^1023 * 2
+        if (q > 1023) return Double.longBitsToDouble(2046L << 52) * (TABLE[j] * p) * 2;
+        return Double.longBitsToDouble((q + 1023) << 52) * (TABLE[j] * p);
+    }
+}
@@ -0,0 +1,250 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 特征归一化
+ * 每一列进行仿射变换 x' = x * mul + add
+ * -MIN_MAX : 缩放到[0, 1]
+ * -Z_SCORE : 均值为0，标准差为1
+ * -MAX_ABS : 缩放到[-1, 1]，不平移，稀疏样本的零元素保持为零
+ * 统计量只需遍历样本集一次，稠密样本的变换直接在原数组上进行
+ */
+public class FeatureScaler {
+    public enum Type {
+        MIN_MAX, Z_SCORE, MAX_ABS
+    }
+
+    private final Type type;
+    //每一列的缩放系数 - n
+    private final double[] mul;
+    //每一列的偏移 - n
+    private final double[] add;
+
+    public FeatureScaler(Type type, double[] mul, double[] add) {
+        if (mul.length != add.length) throw new IllegalArgumentException("缩放参数长度不一致");
+        this.type = type;
+        this.mul = mul.clone();
+        this.add = add.clone();
+    }
+
+    /**
+     * @param data m*n
+     * @param type 归一化方式
+     * @return 根据data统计得到的归一化参数
+     */
+    public static FeatureScaler fit(Matrix data, Type type) {
+        Fitter fitter = new Fitter(data.getColumnDimension(), type);
+        for (double[] row : data.getArray()) {
+            fitter.add(row, 0);
+        }
+        return fitter.build();
+    }
+
+    /**
+     * @param data m*n
+     * @param type 归一化方式
+     * @return 根据data统计得到的归一化参数
+     */
+    public static FeatureScaler fit(SparseMatrix data, Type type) {
+        if (type != Type.MAX_ABS) throw new IllegalArgumentException("稀疏样本只支持MAX_ABS : " + type);
+        int n = data.getColumnDimension();
+        int[] colIdx = data.getColumnIndices();
+        double[] values = data.getValues();
+
+        double[] maxAbs = new double[n];
+        for (int p = 0; p < values.length; p++) {
+            maxAbs[colIdx[p]] = Math.max(maxAbs[colIdx[p]], Math.abs(values[p]));
+        }
+
+        double[] mul = new double[n];
+        for (int j = 0; j < n; j++) {
+            mul[j] = maxAbs[j] > 0 ? 1 / maxAbs[j] : 1;
+        }
+        return new FeatureScaler(type, mul, new double[n]);
+    }
+
+    /**
+     * 直接在data上进行归一化
+     *
+     * @param data m*n
+     */
+    public void transformInPlace(Matrix data) {
+        checkColumns(data.getColumnDimension());
+        for (double[] row : data.getArray()) {
+            transformRow(row, 0);
+        }
+    }
+
+    /**
+     * 直接在按行连续存放的数组上进行归一化
+     *
+     * @param data   m*n
+     * @param offset 第一个样本的偏移
+     * @param m      样本个数
+     */
+    public void transformInPlace(double[] data, int offset, int m) {
+        int n = mul.length;
+        for (int i = 0; i < m; i++) {
+            transformRow(data, offset + i * n);
+        }
+    }
+
+    /**
+     * @param row    样本
+     * @param offset 样本在数组中的偏移
+     */
+    public void transformRow(double[] row, int offset) {
+        for (int j = 0; j < mul.length; j++) {
+            row[offset + j] = row[offset + j] * mul[j] + add[j];
+        }
+    }
+
+    /**
+     * @param x 1*n
+     * @return 归一化后的样本，x不变
+     */
+    public Matrix transform(Matrix x) {
+        checkColumns(x.getColumnDimension());
+        double[] row = x.getRowPackedCopy();
+        transformRow(row, 0);
+        return new Matrix(row, 1);
+    }
+
+    /**
+     * 稀疏样本只需要缩放非零元素，行指针和列序号与x共用
+     *
+     * @param x 稀疏样本 m*n
+     * @return 归一化后的样本，x不变
+     */
+    public SparseMatrix transform(SparseMatrix x) {
+        checkColumns(x.getColumnDimension());
+        checkSparse();
+        int[] colIdx = x.getColumnIndices();
+        double[] values = x.getValues().clone();
+        for (int p = 0; p < values.length; p++) {
+            values[p] *= mul[colIdx[p]];
+        }
+        return new SparseMatrix(x.getRowDimension(), x.getColumnDimension(), x.getRowPointers(), colIdx, values);
+    }
+
+    public void save(DataOutputStream out) throws IOException {
+        out.writeInt(type.ordinal());
+        out.writeInt(mul.length);
+        for (int j = 0; j < mul.length; j++) {
+            out.writeDouble(mul[j]);
+            out.writeDouble(add[j]);
+        }
+    }
+
+    public static FeatureScaler load(DataInputStream in) throws IOException {
+        int typeIdx = in.readInt();
+        if (typeIdx < 0 || typeIdx >= Type.values().length) throw new IOException("未知的归一化方式 : " + typeIdx);
+        int n = in.readInt();
+        double[] mul = new double[n];
+        double[] add = new double[n];
+        for (int j = 0; j < n; j++) {
+            mul[j] = in.readDouble();
+            add[j] = in.readDouble();
+        }
+        return new FeatureScaler(Type.values()[typeIdx], mul, add);
+    }
+
+    private void checkColumns(int n) {
+        if (n != mul.length) throw new IllegalArgumentException("特征个数不一致 : " + mul.length + " , " + n);
+    }
+
+    private void checkSparse() {
+        for (double a : add) {
+            if (a != 0) throw new IllegalStateException("稀疏样本只支持不平移的归一化 : " + type);
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double[] getMul() {
+        return mul.clone();
+    }
+
+    public double[] getAdd() {
+        return add.clone();
+    }
+
+    public int getFeatureCount() {
+        return mul.length;
+    }
+
+    /**
+     * 逐个样本累积统计量，可以在流式加载时使用
+     * 均值和方差使用Welford算法
+     */
+    public static class Fitter {
+        private final Type type;
+        private final double[] min;
+        private final double[] max;
+        private final double[] mean;
+        private final double[] m2;
+        private long count;
+
+        public Fitter(int featureCount, Type type) {
+            this.type = type;
+            this.min = new double[featureCount];
+            this.max = new double[featureCount];
+            this.mean = new double[featureCount];
+            this.m2 = new double[featureCount];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * @param row    样本
+         * @param offset 样本在数组中的偏移
+         */
+        public void add(double[] row, int offset) {
+            count++;
+            for (int j = 0; j < mean.length; j++) {
+                double v = row[offset + j];
+                if (v < min[j]) min[j] = v;
+                if (v > max[j]) max[j] = v;
+                double delta = v - mean[j];
+                mean[j] += delta / count;
+                m2[j] += delta * (v - mean[j]);
+            }
+        }
+
+        public FeatureScaler build() {
+            int n = mean.length;
+            double[] mul = new double[n];
+            double[] add = new double[n];
+            for (int j = 0; j < n; j++) {
+                switch (type) {
+                    case MIN_MAX: {
+                        double range = max[j] - min[j];
+                        mul[j] = range > 0 ? 1 / range : 0;
+                        add[j] = range > 0 ? -min[j] * mul[j] : 0;
+                        break;
+                    }
+                    case Z_SCORE: {
+                        double std = count > 1 ? Math.sqrt(m2[j] / (count - 1)) : 0;
+                        mul[j] = std > 0 ? 1 / std : 0;
+                        add[j] = std > 0 ? -mean[j] * mul[j] : 0;
+                        break;
+                    }
+                    default: {
+                        double maxAbs = Math.max(Math.abs(min[j]), Math.abs(max[j]));
+                        mul[j] = maxAbs > 0 && maxAbs != Double.POSITIVE_INFINITY ? 1 / maxAbs : 1;
+                        add[j] = 0;
+                    }
+                }
+            }
+            return new FeatureScaler(type, mul, add);
+        }
+    }
+}
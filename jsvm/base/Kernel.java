@@ -0,0 +1,147 @@
+package jsvm.base;
+
+import java.util.Arrays;
+
+/**
+ * 核函数
+ * 训练时计算K的列、共享的行缓存、模型的单个和批量预测都通过该接口计算核函数
+ * 第一个参数总是训练样本(支持向量)，第二个参数是训练样本或待预测的样本，只有预计算核区分两者
+ * 实现只需要提供单个样本对的计算，一行对一块、一块对一块有逐个计算的默认实现，
+ * 可以按内积或范数覆盖得到更快的实现
+ * 实现必须不可修改，多个线程同时使用
+ */
+public interface Kernel {
+    /**
+     * @return 核函数类型，保存模型时只保存类型和参数
+     */
+    KernelType type();
+
+    /**
+     * @return 核函数参数
+     */
+    double[] param();
+
+    /**
+     * 两个按行连续存放的稠密样本之间的核函数
+     *
+     * @param a    样本数组
+     * @param aOff 样本a的偏移
+     * @param b    样本数组
+     * @param bOff 样本b的偏移
+     * @param n    特征个数
+     * @return k(a, b)
+     */
+    double apply(double[] a, int aOff, double[] b, int bOff, int n);
+
+    /**
+     * @param a 稀疏样本集
+     * @param i a的行序号
+     * @param b 稀疏样本集
+     * @param k b的行序号
+     * @return k(a_i, b_k)
+     */
+    double apply(SparseMatrix a, int i, SparseMatrix b, int k);
+
+    /**
+     * 预先计算每个样本的范数，不需要时返回空
+     *
+     * @param X 样本 m*n
+     * @return 传给rows和block的范数 - m
+     */
+    default double[] norms(DenseMatrix X) {
+        return null;
+    }
+
+    /**
+     * 一行对一块：out[r - from] = k(X_r, x)
+     *
+     * @param X     样本 m*n
+     * @param norms norms(X)，可以为空
+     * @param from  第一行
+     * @param to    最后一行+1
+     * @param x     样本数组
+     * @param off   样本x的偏移
+     * @param out   输出 - to-from
+     */
+    default void rows(DenseMatrix X, double[] norms, int from, int to, double[] x, int off, double[] out) {
+        double[] data = X.getData();
+        int n = X.cols();
+        for (int r = from; r < to; r++) {
+            out[r - from] = apply(data, X.rowOffset(r), x, off, n);
+        }
+    }
+
+    /**
+     * 稀疏样本的一行对一块：out[r - from] = k(X_r, x_k)
+     */
+    default void rows(SparseMatrix X, int from, int to, SparseMatrix x, int k, double[] out) {
+        for (int r = from; r < to; r++) {
+            out[r - from] = apply(X, r, x, k);
+        }
+    }
+
+    /**
+     * 一块对一块：out[(i - aFrom) * (bTo - bFrom) + j - bFrom] = k(A_i, B_j)
+     *
+     * @param A      样本 按行连续存放
+     * @param aNorms norms(A)，可以为空
+     * @param B      样本 按行连续存放
+     * @param bNorms norms(B)，可以为空
+     * @param out    输出 (aTo-aFrom)*(bTo-bFrom) 按行连续存放
+     */
+    default void block(DenseMatrix A, double[] aNorms, int aFrom, int aTo,
+                       DenseMatrix B, double[] bNorms, int bFrom, int bTo, double[] out) {
+        double[] a = A.getData();
+        double[] b = B.getData();
+        int n = A.cols();
+        int width = bTo - bFrom;
+        for (int i = aFrom; i < aTo; i++) {
+            for (int j = bFrom; j < bTo; j++) {
+                out[(i - aFrom) * width + j - bFrom] = apply(a, A.rowOffset(i), b, B.rowOffset(j), n);
+            }
+        }
+    }
+
+    /**
+     * 内置的核函数
+     * 参数可以多于需要的个数，多余的参数被忽略但随模型保存
+     *
+     * @param type  核函数类型
+     * @param param RBF为theta，POLY为gamma, coef0, degree，SIGMOID为gamma, coef0，LINEAR和PRECOMPUTED没有参数
+     * @return 核函数
+     */
+    static Kernel of(KernelType type, double... param) {
+        if (type == null) throw new IllegalArgumentException("核函数类型不能为空");
+        int required;
+        switch (type) {
+            case RBF:
+            case RBF_FAST:
+                required = 1;
+                break;
+            case POLY:
+                required = 3;
+                break;
+            case SIGMOID:
+                required = 2;
+                break;
+            default:
+                required = 0;
+        }
+        if (param.length < required) {
+            throw new IllegalArgumentException(type + "核函数需要" + required + "个参数 : " + Arrays.toString(param));
+        }
+        switch (type) {
+            case RBF:
+            case RBF_FAST:
+                return new RbfKernel(type == KernelType.RBF_FAST, param);
+            case POLY:
+                return new PolynomialKernel(param);
+            case SIGMOID:
+                return new SigmoidKernel(param);
+            case PRECOMPUTED:
+                return new PrecomputedKernel(param);
+            default:
+                return new LinearKernel(param);
+        }
+    }
+}
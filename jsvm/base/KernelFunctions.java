@@ -2,12 +2,14 @@ package jsvm.base;
 
 import Jama.Matrix;
 
+import java.util.Arrays;
+
 /**
  * Created by zjr on 2017/5/19.
  */
 public class KernelFunctions {
     public static Matrix linearKernel(Matrix X, Matrix A) {
-        return X.times(A.transpose());
+        return kernelTrans(new LinearKernel(), X, A);
     }
 
     /**
@@ -21,19 +23,110 @@ public class KernelFunctions {
      * k(xi, xj) = exp(-1 * ||xi - xj||^2  / theta^2)
      */
     public static Matrix rbfKernel(Matrix X, Matrix A, double... param) {
-        int m = X.getRowDimension();
+        return kernelTrans(new RbfKernel(false, param), X, A);
+    }
+
+    /**
+     * 稀疏样本的线性核，代价与非零元素个数成正比
+     *
+     * @param X xi m*n
+     * @param A xj 1*n
+     * @return m*1
+     */
+    public static Matrix linearKernel(SparseMatrix X, SparseMatrix A) {
+        return kernelTrans(new LinearKernel(), X, A);
+    }
+
+    /**
+     * 稀疏样本的RBF核
+     * ||xi - xj||^2 = ||xi||^2 + ||xj||^2 - 2*xi*xj，其中范数已在SparseMatrix中预先计算
+     *
+     * @param X xi m*n
+     * @param A xj 1*n
+     * @return m*1
+     */
+    public static Matrix rbfKernel(SparseMatrix X, SparseMatrix A, double... param) {
+        return kernelTrans(new RbfKernel(false, param), X, A);
+    }
+
+    /**
+     * 按核函数类型计算
+     *
+     * @param type  核函数类型
+     * @param X     xi m*n
+     * @param A     xj 1*n
+     * @param param 核函数参数
+     * @return m*1
+     */
+    public static Matrix kernelTrans(KernelType type, Matrix X, Matrix A, double... param) {
+        return kernelTrans(Kernel.of(type, param), X, A);
+    }
+
+    /**
+     * 按核函数类型计算稀疏样本
+     *
+     * @param type  核函数类型
+     * @param X     xi m*n
+     * @param A     xj 1*n
+     * @param param 核函数参数
+     * @return m*1
+     */
+    public static Matrix kernelTrans(KernelType type, SparseMatrix X, SparseMatrix A, double... param) {
+        return kernelTrans(Kernel.of(type, param), X, A);
+    }
+
+    /**
+     * 直接读取X的每一行，不转置A，不分配中间矩阵
+     *
+     * @param kernel 核函数
+     * @param X      xi m*n
+     * @param A      xj 1*n
+     * @return m*1
+     */
+    public static Matrix kernelTrans(Kernel kernel, Matrix X, Matrix A) {
+        double[][] x = X.getArray();
+        double[] a = A.getArray()[0];
         int n = X.getColumnDimension();
+        double[] k = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            k[i] = kernel.apply(x[i], 0, a, 0, n);
+        }
+        return new Matrix(k, x.length);
+    }
 
-        // 1*m
+    /**
+     * @param kernel 核函数
+     * @param X      xi m*n
+     * @param A      xj 1*n
+     * @return m*1
+     */
+    public static Matrix kernelTrans(Kernel kernel, SparseMatrix X, SparseMatrix A) {
+        int m = X.getRowDimension();
         double[] k = new double[m];
+        kernel.rows(X, 0, m, A, 0, k);
+        return new Matrix(k, m);
+    }
+
+    /**
+     * 第from到to-1个样本与全部样本的核函数，即矩阵K的若干列
+     * 由核函数按块计算，内积类的核函数先用分块的gemm计算内积
+     *
+     * @param kernel 核函数
+     * @param X      样本 m*n
+     * @param norms  kernel.norms(X)，可以为空
+     * @param from   第一个样本
+     * @param to     最后一个样本+1
+     * @return K的列 (to-from)*m
+     */
+    public static double[][] kernelColumns(Kernel kernel, DenseMatrix X, double[] norms, int from, int to) {
+        int m = X.rows();
+        double[] block = new double[Math.multiplyExact(to - from, m)];
+        kernel.block(X, norms, from, to, X, norms, 0, m, block);
 
-        for (int i = 0; i < m; i++) {
-            // 1*n
-            Matrix deltaRow = X.getMatrix(i, i, 0, n - 1).minus(A);
-            double ki = deltaRow.times(deltaRow.transpose()).get(0, 0);
-            k[i] = Math.exp(ki * -1.0 / Math.pow(param[0], 2));
+        double[][] columns = new double[to - from][];
+        for (int t = 0; t < to - from; t++) {
+            columns[t] = Arrays.copyOfRange(block, t * m, (t + 1) * m);
         }
-        // k : m*1
-        return new Matrix(k, 1).transpose();
+        return columns;
     }
 }
@@ -0,0 +1,22 @@
+package jsvm.base;
+
+/**
+ * 训练时使用的核函数矩阵K - m*m，对称
+ */
+public interface KernelMatrix {
+    /**
+     * @return 样本个数 - m
+     */
+    int size();
+
+    /**
+     * @return K(i, j)
+     */
+    double get(int i, int j);
+
+    /**
+     * @param i 样本序号
+     * @return K的第i列 - m，只读，调用者不能修改
+     */
+    double[] column(int i);
+}
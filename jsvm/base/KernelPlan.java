@@ -0,0 +1,237 @@
+package jsvm.base;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * 训练前根据样本规模和可用内存选择矩阵K的存放方式
+ * 依次尝试 : 堆内完整的K -> 内存映射的K -> 堆内行缓存 -> 低秩近似，
+ * 选择第一个放得下的，避免训练到一半时OutOfMemoryError
+ */
+public final class KernelPlan {
+    //K最多使用剩余堆内存的比例，其余留给偏差缓存、支持向量和模型
+    private static final double HEAP_FRACTION = 0.5;
+    //行缓存至少要放下的行的比例，低于该比例时几乎每一步都需要重新计算
+    private static final double MIN_CACHE_FRACTION = 0.1;
+    //double[]的对象头
+    private static final long ARRAY_HEADER = 16;
+    //低秩近似的秩
+    private static final int MIN_RANK = 16;
+    private static final int MAX_RANK = 256;
+    //JDK 14起的OperatingSystemMXBean.getFreeMemorySize，容器中按cgroup的限制计算，较早的JDK为空
+    private static final Method FREE_MEMORY_SIZE = freeMemorySizeMethod();
+
+    private final KernelStrategy strategy;
+    private final int sampleCount;
+    private final int featureCount;
+    //完整的K需要的字节数
+    private final long denseBytes;
+    //剩余的堆内存
+    private final long availableHeap;
+    //空闲的物理内存，映射的K由页缓存承载
+    private final long availableOffHeap;
+    //临时目录的可用空间
+    private final long availableDisk;
+    //ROW_CACHE时缓存的行数
+    private final int cacheRows;
+    //LOW_RANK时的秩
+    private final int rank;
+    //按原计划分配失败的原因，不是回退的计划时为空
+    private final String fallbackReason;
+
+    private KernelPlan(KernelStrategy strategy, int sampleCount, int featureCount, long availableHeap,
+                       long availableOffHeap, long availableDisk) {
+        this(strategy, sampleCount, featureCount, availableHeap, availableOffHeap, availableDisk, null);
+    }
+
+    private KernelPlan(KernelStrategy strategy, int sampleCount, int featureCount, long availableHeap,
+                       long availableOffHeap, long availableDisk, String fallbackReason) {
+        this.strategy = strategy;
+        this.sampleCount = sampleCount;
+        this.featureCount = featureCount;
+        this.denseBytes = denseBytes(sampleCount);
+        this.availableHeap = availableHeap;
+        this.availableOffHeap = availableOffHeap;
+        this.availableDisk = availableDisk;
+
+        long budget = budget(sampleCount, availableHeap);
+        long rowBytes = 8L * sampleCount + ARRAY_HEADER;
+        this.cacheRows = (int) Math.max(2, Math.min(sampleCount, budget / rowBytes));
+        this.rank = (int) Math.max(1, Math.min(Math.min(sampleCount, MAX_RANK), budget / rowBytes));
+        this.fallbackReason = fallbackReason;
+    }
+
+    /**
+     * 按当前JVM的堆内存、空闲物理内存和临时目录的空间选择
+     *
+     * @param sampleCount  样本个数 - m
+     * @param featureCount 特征个数 - n
+     * @return 计划
+     */
+    public static KernelPlan plan(int sampleCount, int featureCount) {
+        return plan(sampleCount, featureCount, availableHeap(), availableOffHeap(), availableDisk());
+    }
+
+    /**
+     * @param sampleCount      样本个数 - m
+     * @param featureCount     特征个数 - n
+     * @param availableHeap    剩余的堆内存
+     * @param availableOffHeap 空闲的物理内存
+     * @param availableDisk    临时目录的可用空间
+     * @return 计划
+     */
+    public static KernelPlan plan(int sampleCount, int featureCount, long availableHeap, long availableOffHeap,
+                                  long availableDisk) {
+        long dense = denseBytes(sampleCount);
+        long budget = budget(sampleCount, availableHeap);
+        long rowBytes = 8L * sampleCount + ARRAY_HEADER;
+
+        KernelStrategy strategy;
+        if (dense <= budget) {
+            strategy = KernelStrategy.DENSE;
+        } else if (dense <= availableOffHeap && dense <= availableDisk) {
+            strategy = KernelStrategy.MAPPED;
+        } else if (budget / rowBytes >= Math.max(2, sampleCount * MIN_CACHE_FRACTION)) {
+            strategy = KernelStrategy.ROW_CACHE;
+        } else if (budget / rowBytes >= MIN_RANK) {
+            strategy = KernelStrategy.LOW_RANK;
+        } else {
+            //低秩近似也放不下时只能使用最小的行缓存，很慢但结果精确
+            strategy = KernelStrategy.ROW_CACHE;
+        }
+        return new KernelPlan(strategy, sampleCount, featureCount, availableHeap, availableOffHeap, availableDisk);
+    }
+
+    /**
+     * 指定存放方式，只计算缓存行数和秩
+     *
+     * @param strategy     存放方式
+     * @param sampleCount  样本个数 - m
+     * @param featureCount 特征个数 - n
+     * @return 计划
+     */
+    public static KernelPlan of(KernelStrategy strategy, int sampleCount, int featureCount) {
+        if (strategy == null) throw new IllegalArgumentException("存放方式不能为空");
+        return new KernelPlan(strategy, sampleCount, featureCount, availableHeap(), availableOffHeap(),
+                availableDisk());
+    }
+
+    private static long denseBytes(int sampleCount) {
+        return sampleCount * (8L * sampleCount + ARRAY_HEADER);
+    }
+
+    private static long budget(int sampleCount, long availableHeap) {
+        //偏差缓存、算子、标签等每个样本还需要约33字节
+        return Math.max(0, (long) ((availableHeap - 33L * sampleCount) * HEAP_FRACTION));
+    }
+
+    private static long availableHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private static long availableOffHeap() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        //无法得知时不使用内存映射
+        if (!(os instanceof com.sun.management.OperatingSystemMXBean)) return 0;
+        if (FREE_MEMORY_SIZE != null) {
+            try {
+                return (Long) FREE_MEMORY_SIZE.invoke(os);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                //使用旧的方法
+            }
+        }
+        return freePhysicalMemorySize((com.sun.management.OperatingSystemMXBean) os);
+    }
+
+    private static Method freeMemorySizeMethod() {
+        try {
+            return com.sun.management.OperatingSystemMXBean.class.getMethod("getFreeMemorySize");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 编译目标为Java 8，没有getFreeMemorySize，只在JDK 14之前调用，之后的版本中该方法已废弃
+     */
+    @SuppressWarnings("deprecation")
+    private static long freePhysicalMemorySize(com.sun.management.OperatingSystemMXBean os) {
+        return os.getFreePhysicalMemorySize();
+    }
+
+    private static long availableDisk() {
+        return new File(System.getProperty("java.io.tmpdir")).getUsableSpace();
+    }
+
+    public KernelStrategy getStrategy() {
+        return strategy;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public long getDenseBytes() {
+        return denseBytes;
+    }
+
+    public long getAvailableHeap() {
+        return availableHeap;
+    }
+
+    public long getAvailableOffHeap() {
+        return availableOffHeap;
+    }
+
+    public long getAvailableDisk() {
+        return availableDisk;
+    }
+
+    public int getCacheRows() {
+        return cacheRows;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * @return 按原计划分配失败的原因，不是回退的计划时为空
+     */
+    public String getFallbackReason() {
+        return fallbackReason;
+    }
+
+    /**
+     * 估计不准确，按计划分配失败时使用
+     *
+     * @param strategy 存放方式
+     * @param reason   原计划分配失败的原因
+     * @return 使用其他存放方式的计划
+     */
+    public KernelPlan fallback(KernelStrategy strategy, String reason) {
+        return new KernelPlan(strategy, sampleCount, featureCount, availableHeap(), availableOffHeap, availableDisk,
+                reason);
+    }
+
+    private static String mb(long bytes) {
+        return String.format("%.1fMB", bytes / 1048576.0);
+    }
+
+    @Override
+    public String toString() {
+        String detail = strategy == KernelStrategy.ROW_CACHE ? "，缓存" + cacheRows + "行"
+                : strategy == KernelStrategy.LOW_RANK ? "，秩" + rank : "";
+        return strategy + detail + " (m=" + sampleCount + "，n=" + featureCount + "，完整的K需要" + mb(denseBytes)
+                + "，可用堆内存" + mb(availableHeap) + "，空闲物理内存" + mb(availableOffHeap)
+                + "，临时目录可用" + mb(availableDisk) + ")"
+                + (fallbackReason == null ? "" : "，" + fallbackReason);
+    }
+}
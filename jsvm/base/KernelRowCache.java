@@ -0,0 +1,192 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多个训练器共享的核函数行缓存
+ * 缓存整个样本集上K的行，按最近最少使用淘汰，多个线程可以同时读取
+ * 一对一等多分类训练中，各个子问题使用同一批样本的不同子集，通过view得到子集上的K，
+ * 同一个样本的行只计算一次
+ * 第一次调用view时确定核函数，之后的训练器必须使用相同的核函数和参数
+ */
+public class KernelRowCache {
+    //样本集 - m*n，与sparseData只有一个不为空
+    private final DenseMatrix data;
+    private final SparseMatrix sparseData;
+    //核函数预先计算的每个样本的范数，第一次调用view时计算
+    private double[] norms;
+    private final int sampleCount;
+    //最多缓存的行数
+    private final int capacity;
+
+    private final LinkedHashMap<Integer, double[]> rows;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+
+    private Kernel kernel;
+    private double[] kernelParam;
+
+    /**
+     * @param data     样本集 m*n
+     * @param capacity 最多缓存的行数
+     */
+    public KernelRowCache(Matrix data, int capacity) {
+        this(DenseMatrix.fromJama(data), null, data.getRowDimension(), capacity);
+    }
+
+    /**
+     * 不复制样本，训练器按内存预算缓存自己的K时使用
+     *
+     * @param data     样本集 m*n 按行连续存放
+     * @param capacity 最多缓存的行数
+     */
+    KernelRowCache(DenseMatrix data, int capacity) {
+        this(data, null, data.rows(), capacity);
+    }
+
+    /**
+     * @param data     稀疏样本集 m*n
+     * @param capacity 最多缓存的行数
+     */
+    public KernelRowCache(SparseMatrix data, int capacity) {
+        this(null, data, data.getRowDimension(), capacity);
+    }
+
+    private KernelRowCache(DenseMatrix data, SparseMatrix sparseData, int sampleCount, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("缓存行数必须大于0 : " + capacity);
+        this.data = data;
+        this.sparseData = sparseData;
+        this.sampleCount = sampleCount;
+        this.capacity = capacity;
+        this.rows = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest) {
+                return size() > KernelRowCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param idx    子集中每个样本在整个样本集中的序号
+     * @param kernel 核函数
+     * @param param  核函数参数
+     * @return 子集上的K - idx.length*idx.length
+     */
+    public synchronized KernelMatrix view(int[] idx, Kernelable kernel, double[] param) {
+        if (this.kernel == null) {
+            this.kernel = kernel.kernel(param);
+            this.kernelParam = param.clone();
+            this.norms = data == null ? null : this.kernel.norms(data);
+        } else if (kernel.kernelType() != this.kernel.type() || !Arrays.equals(param, kernelParam)) {
+            throw new IllegalArgumentException("共享缓存的训练器必须使用相同的核函数 : " + this.kernel.type()
+                    + Arrays.toString(kernelParam) + " , " + kernel.kernelType() + Arrays.toString(param));
+        }
+        for (int i : idx) {
+            if (i < 0 || i >= sampleCount) throw new IllegalArgumentException("样本序号越界 : " + i);
+        }
+        return new SubsetView(idx.clone());
+    }
+
+    /**
+     * @param i 样本在整个样本集中的序号
+     * @return K的第i行 - m
+     */
+    public double[] row(int i) {
+        double[] row;
+        synchronized (this) {
+            row = rows.get(i);
+        }
+        if (row != null) {
+            hits.increment();
+            return row;
+        }
+        misses.increment();
+        //在锁外计算，多个线程同时缺失同一行时可能重复计算，结果相同
+        row = computeRow(i);
+        synchronized (this) {
+            rows.put(i, row);
+        }
+        return row;
+    }
+
+    private double[] computeRow(int i) {
+        evaluations.add(sampleCount);
+        double[] row = new double[sampleCount];
+        if (sparseData == null) kernel.block(data, norms, i, i + 1, data, norms, 0, sampleCount, row);
+        else kernel.rows(sparseData, 0, sampleCount, sparseData, i, row);
+        return row;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 计算核函数的次数
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * @return 命中率，还没有读取时为NaN
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? Double.NaN : h * 1.0 / total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 子集上的K，读取时映射到整个样本集的行
+     */
+    private class SubsetView implements KernelMatrix {
+        private final int[] idx;
+        //子集为整个样本集时直接返回缓存的行，不需要复制
+        private final boolean identity;
+
+        private SubsetView(int[] idx) {
+            this.idx = idx;
+            boolean identity = idx.length == sampleCount;
+            for (int k = 0; identity && k < idx.length; k++) {
+                identity = idx[k] == k;
+            }
+            this.identity = identity;
+        }
+
+        @Override
+        public int size() {
+            return idx.length;
+        }
+
+        @Override
+        public double get(int i, int j) {
+            return row(idx[i])[idx[j]];
+        }
+
+        @Override
+        public double[] column(int i) {
+            double[] full = row(idx[i]);
+            if (identity) return full;
+            double[] res = new double[idx.length];
+            for (int k = 0; k < idx.length; k++) {
+                res[k] = full[idx[k]];
+            }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package jsvm.base;
+
+/**
+ * 训练时矩阵K的存放方式，由KernelPlan根据可用内存选择
+ */
+public enum KernelStrategy {
+    //完整计算并保存在堆内，m*m
+    DENSE,
+    //只在堆内缓存最近使用的行，缺失时重新计算，结果精确
+    ROW_CACHE,
+    //完整计算后写入临时文件并内存映射，由操作系统的页缓存承载
+    MAPPED,
+    //Nystrom低秩近似 K ≈ G*G'，G为m*r
+    LOW_RANK
+}
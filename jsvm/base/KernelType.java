@@ -0,0 +1,19 @@
+package jsvm.base;
+
+/**
+ * 核函数类型，随模型一起保存，只能在末尾追加
+ */
+public enum KernelType {
+    //k(xi, xj) = exp(-1 * ||xi - xj||^2  / theta^2)，参数为theta
+    RBF,
+    //k(xi, xj) = xi * xj
+    LINEAR,
+    //与RBF相同，exp使用FastMath.exp，相对误差不超过FastMath.MAX_RELATIVE_ERROR
+    RBF_FAST,
+    //k(xi, xj) = (gamma * xi * xj + coef0)^degree，参数为gamma, coef0, degree
+    POLY,
+    //k(xi, xj) = tanh(gamma * xi * xj + coef0)，参数为gamma, coef0
+    SIGMOID,
+    //样本为预先计算的核矩阵的行，见PrecomputedKernel
+    PRECOMPUTED
+}
@@ -6,7 +6,28 @@ import Jama.Matrix;
  * Created by zjr on 2017/5/7.
  */
 public interface Kernelable {
+    /**
+     * @return 核函数类型
+     */
+    default KernelType kernelType() {
+        return KernelType.RBF;
+    }
+
+    /**
+     * 训练、共享缓存和训练得到的模型都使用该核函数，自定义核函数时覆盖该方法
+     *
+     * @param param 核函数参数
+     * @return 核函数
+     */
+    default Kernel kernel(double... param) {
+        return Kernel.of(kernelType(), param);
+    }
+
     default Matrix kernelTrans(Matrix X, Matrix A, double... param) {
-        return KernelFunctions.rbfKernel(X, A, param);
+        return KernelFunctions.kernelTrans(kernel(param), X, A);
+    }
+
+    default Matrix kernelTrans(SparseMatrix X, SparseMatrix A, double... param) {
+        return KernelFunctions.kernelTrans(kernel(param), X, A);
     }
 }
@@ -0,0 +1,29 @@
+package jsvm.base;
+
+/**
+ * k(xi, xj) = xi * xj
+ */
+public final class LinearKernel extends DotProductKernel {
+    /**
+     * @param param 不使用，随模型保存
+     */
+    public LinearKernel(double... param) {
+        super(param);
+    }
+
+    @Override
+    public KernelType type() {
+        return KernelType.LINEAR;
+    }
+
+    @Override
+    protected double fromDot(double dot, double aa, double bb) {
+        return dot;
+    }
+
+    @Override
+    public void block(DenseMatrix A, double[] aNorms, int aFrom, int aTo,
+                      DenseMatrix B, double[] bNorms, int bFrom, int bTo, double[] out) {
+        DenseMatrix.gemmNT(A, aFrom, aTo, B, bFrom, bTo, out);
+    }
+}
@@ -0,0 +1,123 @@
+package jsvm.base;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Nystrom低秩近似的矩阵K ≈ G*G' - m*m，只保存G - m*r
+ * 随机选r个样本作为基准点，C为全部样本与基准点的核函数 - m*r，W为基准点之间的核函数 - r*r，
+ * K ≈ C * W^-1 * C'，W = U*S*U'，取 G = C*U*S^(-1/2)
+ * 只需要计算m*r次核函数，结果是近似的，秩越大越接近
+ */
+public class LowRankKernelMatrix implements KernelMatrix {
+    //保留最近计算的列，SMO每一步只使用两列
+    private static final int RECENT = 4;
+    //W的特征值小于最大特征值的该比例时舍去，避免除以接近0的数
+    private static final double EIGEN_EPS = 1e-10;
+
+    //m*r
+    private final DenseMatrix G;
+    private final double[] rowBuf;
+
+    private final int[] recentIdx = new int[RECENT];
+    private final double[][] recent = new double[RECENT][];
+    private int nextRecent;
+
+    private LowRankKernelMatrix(DenseMatrix G) {
+        this.G = G;
+        this.rowBuf = new double[G.cols()];
+        Arrays.fill(recentIdx, -1);
+    }
+
+    /**
+     * @param size   样本个数 - m
+     * @param rank   基准点个数 - r
+     * @param seed   选择基准点的随机种子
+     * @param column 计算K的第i列 - m
+     * @return 低秩近似的K
+     */
+    public static LowRankKernelMatrix nystrom(int size, int rank, long seed, IntFunction<double[]> column) {
+        if (rank < 1 || rank > size) throw new IllegalArgumentException("秩必须在1到" + size + "之间 : " + rank);
+
+        //部分洗牌，不重复地选出rank个基准点
+        int[] perm = new int[size];
+        for (int i = 0; i < size; i++) perm[i] = i;
+        Random random = new Random(seed);
+        for (int t = 0; t < rank; t++) {
+            int s = t + random.nextInt(size - t);
+            int tmp = perm[t];
+            perm[t] = perm[s];
+            perm[s] = tmp;
+        }
+
+        //C - m*r 按行连续存放
+        DenseMatrix C = new DenseMatrix(size, rank);
+        double[][] W = new double[rank][rank];
+        for (int t = 0; t < rank; t++) {
+            double[] Kt = column.apply(perm[t]);
+            for (int i = 0; i < size; i++) C.set(i, t, Kt[i]);
+            for (int s = 0; s < rank; s++) W[s][t] = Kt[perm[s]];
+        }
+
+        EigenvalueDecomposition eig = new Matrix(W).eig();
+        double[] d = eig.getRealEigenvalues();
+        double[][] U = eig.getV().getArray();
+        double maxD = 0;
+        for (double v : d) maxD = Math.max(maxD, v);
+        int kept = 0;
+        for (double v : d) if (v > maxD * EIGEN_EPS) kept++;
+        if (kept == 0) throw new IllegalStateException("基准点的核函数矩阵没有正的特征值");
+
+        //U*S^(-1/2)，只保留正的特征值 - r*kept
+        DenseMatrix P = new DenseMatrix(rank, kept);
+        int c = 0;
+        for (int k = 0; k < rank; k++) {
+            if (d[k] <= maxD * EIGEN_EPS) continue;
+            double scale = 1 / Math.sqrt(d[k]);
+            for (int s = 0; s < rank; s++) P.set(s, c, U[s][k] * scale);
+            c++;
+        }
+
+        DenseMatrix G = new DenseMatrix(size, kept);
+        DenseMatrix.gemm(1, C, P, 0, G);
+        return new LowRankKernelMatrix(G);
+    }
+
+    /**
+     * @return 实际使用的秩，舍去W接近0的特征值后可能小于基准点个数
+     */
+    public int rank() {
+        return G.cols();
+    }
+
+    @Override
+    public int size() {
+        return G.rows();
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return DenseMatrix.dot(G.getData(), G.rowOffset(i), G.getData(), G.rowOffset(j), G.cols());
+    }
+
+    /**
+     * K的第i列 = G * G(i,:)'，每次计算需要 m*r 次乘法
+     */
+    @Override
+    public double[] column(int i) {
+        for (int r = 0; r < RECENT; r++) {
+            if (recentIdx[r] == i) return recent[r];
+        }
+        double[] column = new double[G.rows()];
+        G.gemv(1, G.row(i, rowBuf), 0, column);
+
+        recentIdx[nextRecent] = i;
+        recent[nextRecent] = column;
+        nextRecent = (nextRecent + 1) % RECENT;
+        return column;
+    }
+}
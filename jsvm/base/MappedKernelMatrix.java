@@ -0,0 +1,102 @@
+package jsvm.base;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 写入临时文件并内存映射的矩阵K - m*m
+ * K不占用堆内存，由操作系统的页缓存承载，物理内存不足时由操作系统换出
+ * 每个映射不能超过2G，按列分为若干段映射
+ * 临时文件在映射后即删除，映射在不再被引用时释放
+ */
+public class MappedKernelMatrix implements KernelMatrix {
+    //保留最近读取的列，SMO每一步只使用两列
+    private static final int RECENT = 4;
+
+    private final int size;
+    //每一段的列数
+    private final int segmentColumns;
+    private final DoubleBuffer[] segments;
+
+    private final int[] recentIdx = new int[RECENT];
+    private final double[][] recent = new double[RECENT][];
+    private int nextRecent;
+
+    /**
+     * 创建全为0的K，之后用setColumn写入
+     *
+     * @param size 样本个数 - m
+     * @throws IOException 无法创建或映射临时文件
+     */
+    public MappedKernelMatrix(int size) throws IOException {
+        this.size = size;
+        long columnBytes = Math.max(1, 8L * size);
+        this.segmentColumns = (int) Math.max(1, Math.min(size, Integer.MAX_VALUE / columnBytes));
+        int segmentCount = size == 0 ? 0 : (size + segmentColumns - 1) / segmentColumns;
+        this.segments = new DoubleBuffer[segmentCount];
+        Arrays.fill(recentIdx, -1);
+
+        Path file = Files.createTempFile("jsvm-kernel", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE)) {
+            for (int s = 0; s < segmentCount; s++) {
+                long first = (long) s * segmentColumns;
+                long columns = Math.min(segmentColumns, size - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, first * 8L * size, columns * 8L * size)
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * @param i      样本序号
+     * @param column K的第i列 - m
+     */
+    public void setColumn(int i, double[] column) {
+        if (column.length < size) throw new IllegalArgumentException("列的长度不一致 : " + column.length + " , " + size);
+        DoubleBuffer segment = segments[i / segmentColumns].duplicate();
+        segment.position((i % segmentColumns) * size);
+        segment.put(column, 0, size);
+        for (int r = 0; r < RECENT; r++) {
+            if (recentIdx[r] == i) recentIdx[r] = -1;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return segments[i / segmentColumns].get((i % segmentColumns) * size + j);
+    }
+
+    /**
+     * 从映射中复制第i列，最近读取的列不重复复制
+     */
+    @Override
+    public double[] column(int i) {
+        for (int r = 0; r < RECENT; r++) {
+            if (recentIdx[r] == i) return recent[r];
+        }
+        double[] column = new double[size];
+        DoubleBuffer segment = segments[i / segmentColumns].duplicate();
+        segment.position((i % segmentColumns) * size);
+        segment.get(column);
+
+        recentIdx[nextRecent] = i;
+        recent[nextRecent] = column;
+        nextRecent = (nextRecent + 1) % RECENT;
+        return column;
+    }
+}
@@ -0,0 +1,121 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.util.stream.IntStream;
+
+/**
+ * 并行评估
+ * 样本集按CHUNK个样本分块，在所有核上并行计算，每块用SvmModel.decisionValues按块计算，
+ * 得到各自的EvaluationReport后合并
+ */
+public class ModelEvaluator {
+    //每块的样本个数
+    public static final int CHUNK = 16384;
+
+    /**
+     * @param model 模型
+     * @param x     样本 m*n
+     * @param y     标签 m*1
+     * @return 评估结果
+     */
+    public static EvaluationReport evaluate(SvmModel model, Matrix x, Matrix y) {
+        int m = x.getRowDimension();
+        int n = x.getColumnDimension();
+        checkFeatureCount(model, n);
+        checkLabelCount(m, y.getRowDimension());
+        double[][] arr = x.getArray();
+        double[] labels = y.getColumnPackedCopy();
+        return IntStream.range(0, chunkCount(m)).parallel()
+                .mapToObj(c -> {
+                    int from = c * CHUNK;
+                    int rows = Math.min(CHUNK, m - from);
+                    //复制到连续的数组
+                    double[] buf = new double[rows * n];
+                    for (int i = 0; i < rows; i++) {
+                        System.arraycopy(arr[from + i], 0, buf, i * n, n);
+                    }
+                    return evaluateChunk(model, buf, 0, labels, from, rows);
+                })
+                .reduce(EvaluationReport::merge).orElseGet(EvaluationReport::new);
+    }
+
+    /**
+     * @param model  模型
+     * @param x      样本 m*n 按行连续存放
+     * @param labels 标签 m
+     * @param m      样本个数
+     * @return 评估结果
+     */
+    public static EvaluationReport evaluate(SvmModel model, double[] x, double[] labels, int m) {
+        int n = model.getFeatureCount();
+        //在并行计算之前检查，避免在工作线程中数组越界
+        if (m < 0 || x.length < (long) m * n) {
+            throw new IllegalArgumentException("样本数组长度不足 : " + x.length + " , " + m + "*" + n);
+        }
+        if (labels.length < m) throw new IllegalArgumentException("标签个数不足 : " + labels.length + " , " + m);
+        return IntStream.range(0, chunkCount(m)).parallel()
+                .mapToObj(c -> {
+                    int from = c * CHUNK;
+                    return evaluateChunk(model, x, from * n, labels, from, Math.min(CHUNK, m - from));
+                })
+                .reduce(EvaluationReport::merge).orElseGet(EvaluationReport::new);
+    }
+
+    /**
+     * @param model 模型
+     * @param x     稀疏样本 m*n
+     * @param y     标签 m*1
+     * @return 评估结果
+     */
+    public static EvaluationReport evaluate(SvmModel model, SparseMatrix x, Matrix y) {
+        int m = x.getRowDimension();
+        checkFeatureCount(model, x.getColumnDimension());
+        checkLabelCount(m, y.getRowDimension());
+        return IntStream.range(0, chunkCount(m)).parallel()
+                .mapToObj(c -> {
+                    EvaluationReport report = new EvaluationReport();
+                    int to = Math.min(m, (c + 1) * CHUNK);
+                    for (int i = c * CHUNK; i < to; i++) {
+                        report.add(y.get(i, 0), model.decisionValue(x.row(i)));
+                    }
+                    return report;
+                })
+                .reduce(EvaluationReport::merge).orElseGet(EvaluationReport::new);
+    }
+
+    private static void checkFeatureCount(SvmModel model, int n) {
+        if (n != model.getFeatureCount()) {
+            throw new IllegalArgumentException("特征个数不一致 : " + model.getFeatureCount() + " , " + n);
+        }
+    }
+
+    private static void checkLabelCount(int m, int labelCount) {
+        if (labelCount != m) throw new IllegalArgumentException("标签个数不一致 : " + m + " , " + labelCount);
+    }
+
+    /**
+     * 评估一块样本
+     *
+     * @param model       模型
+     * @param x           样本 按行连续存放
+     * @param offset      第一个样本在x中的偏移
+     * @param labels      标签
+     * @param labelOffset 第一个样本在labels中的偏移
+     * @param rows        样本个数
+     * @return 评估结果
+     */
+    public static EvaluationReport evaluateChunk(SvmModel model, double[] x, int offset,
+                                                 double[] labels, int labelOffset, int rows) {
+        EvaluationReport report = new EvaluationReport();
+        double[] f = model.decisionValues(x, offset, rows);
+        for (int i = 0; i < rows; i++) {
+            report.add(labels[labelOffset + i], f[i]);
+        }
+        return report;
+    }
+
+    private static int chunkCount(int m) {
+        return (m + CHUNK - 1) / CHUNK;
+    }
+}
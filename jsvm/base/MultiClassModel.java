@@ -0,0 +1,214 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * 一对一多分类模型
+ * 所有二分类子模型的支持向量合并为一个集合，每个不同的支持向量只保存一次，
+ * 预测时每个支持向量的核函数只计算一次，再由各个子模型按各自的系数求和后投票
+ * 创建后不可修改，predict可以在多个线程中同时调用
+ */
+public final class MultiClassModel {
+    private final double[] classes;
+    private final Kernel kernel;
+    private final int featureCount;
+
+    //所有子模型的支持向量的并集 - u，稠密时 u*n 按行连续存放
+    private final int svCount;
+    private final DoubleBuffer svData;
+    private final SparseMatrix svSparse;
+
+    //第k个子模型区分classes[first[k]]和classes[second[k]]，决策值大于0时为first
+    private final int[] first;
+    private final int[] second;
+    private final double[] b;
+    //子模型的支持向量在并集中的序号及对应的alpha*y
+    private final int[][] svRef;
+    private final double[][] coef;
+
+    private final FeatureScaler scaler;
+
+    /**
+     * @param classes      类别标签 - c
+     * @param kernelType   核函数类型
+     * @param kernelParam  核函数参数
+     * @param svData       支持向量的并集 u*n 按行连续存放
+     * @param svSparse     稀疏支持向量的并集 u*n，与svData只有一个不为空
+     * @param featureCount 特征的个数 - n
+     * @param first        每个子模型的正类在classes中的序号
+     * @param second       每个子模型的负类在classes中的序号
+     * @param b            每个子模型的b
+     * @param svRef        每个子模型的支持向量在并集中的序号
+     * @param coef         每个子模型的alpha*y
+     * @param scaler       归一化参数，可以为空
+     */
+    public MultiClassModel(double[] classes, KernelType kernelType, double[] kernelParam,
+                           DoubleBuffer svData, SparseMatrix svSparse, int featureCount,
+                           int[] first, int[] second, double[] b, int[][] svRef, double[][] coef,
+                           FeatureScaler scaler) {
+        this(classes, Kernel.of(kernelType, kernelParam), svData, svSparse, featureCount,
+                first, second, b, svRef, coef, scaler);
+    }
+
+    /**
+     * @param classes      类别标签 - c
+     * @param kernel       核函数，所有子模型相同
+     * @param svData       支持向量的并集 u*n 按行连续存放
+     * @param svSparse     稀疏支持向量的并集 u*n，与svData只有一个不为空
+     * @param featureCount 特征的个数 - n
+     * @param first        每个子模型的正类在classes中的序号
+     * @param second       每个子模型的负类在classes中的序号
+     * @param b            每个子模型的b
+     * @param svRef        每个子模型的支持向量在并集中的序号
+     * @param coef         每个子模型的alpha*y
+     * @param scaler       归一化参数，可以为空
+     */
+    public MultiClassModel(double[] classes, Kernel kernel,
+                           DoubleBuffer svData, SparseMatrix svSparse, int featureCount,
+                           int[] first, int[] second, double[] b, int[][] svRef, double[][] coef,
+                           FeatureScaler scaler) {
+        this.svCount = svSparse != null ? svSparse.getRowDimension() : svData.remaining() / Math.max(featureCount, 1);
+        for (int k = 0; k < b.length; k++) {
+            if (svRef[k].length != coef[k].length) throw new IllegalArgumentException("子模型" + k + "的系数个数不一致");
+            for (int r : svRef[k]) {
+                if (r < 0 || r >= svCount) throw new IllegalArgumentException("支持向量序号越界 : " + r);
+            }
+        }
+        this.classes = classes.clone();
+        this.kernel = kernel;
+        this.featureCount = featureCount;
+        this.svData = svData != null ? svData.slice().asReadOnlyBuffer() : null;
+        this.svSparse = svSparse;
+        this.first = first.clone();
+        this.second = second.clone();
+        this.b = b.clone();
+        this.svRef = new int[svRef.length][];
+        this.coef = new double[coef.length][];
+        for (int k = 0; k < b.length; k++) {
+            this.svRef[k] = svRef[k].clone();
+            this.coef[k] = coef[k].clone();
+        }
+        this.scaler = scaler;
+    }
+
+    /**
+     * @param x 样本 长度为n
+     * @return 每个子模型的决策值 - 子模型个数
+     */
+    public double[] decisionValues(double[] x) {
+        if (x.length != featureCount) throw new IllegalArgumentException("特征个数不一致 : " + featureCount + " , " + x.length);
+        if (scaler != null) {
+            x = x.clone();
+            scaler.transformRow(x, 0);
+        }
+
+        //每个支持向量的核函数只计算一次
+        double[] k = new double[svCount];
+        if (svSparse != null) {
+            kernel.rows(svSparse, 0, svCount, SparseMatrix.fromDense(new Matrix(x, 1)), 0, k);
+        } else {
+            double[] sv = new double[featureCount];
+            DoubleBuffer buf = svData.duplicate();
+            for (int r = 0; r < svCount; r++) {
+                buf.get(sv);
+                k[r] = kernel.apply(sv, 0, x, 0, featureCount);
+            }
+        }
+
+        double[] res = new double[b.length];
+        for (int m = 0; m < b.length; m++) {
+            double s = b[m];
+            int[] ref = svRef[m];
+            double[] c = coef[m];
+            for (int t = 0; t < ref.length; t++) {
+                s += c[t] * k[ref[t]];
+            }
+            res[m] = s;
+        }
+        return res;
+    }
+
+    /**
+     * 投票，票数相同时取classes中靠前的类别
+     *
+     * @param x 样本 长度为n
+     * @return 类别标签
+     */
+    public double predict(double[] x) {
+        double[] f = decisionValues(x);
+        int[] votes = new int[classes.length];
+        for (int m = 0; m < f.length; m++) {
+            votes[f[m] > 0 ? first[m] : second[m]]++;
+        }
+        int best = 0;
+        for (int c = 1; c < classes.length; c++) {
+            if (votes[c] > votes[best]) best = c;
+        }
+        return classes[best];
+    }
+
+    /**
+     * @param x 样本 1*n
+     * @return 类别标签
+     */
+    public double predict(Matrix x) {
+        return predict(x.getRowPackedCopy());
+    }
+
+    public double[] getClasses() {
+        return classes.clone();
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    public KernelType getKernelType() {
+        return kernel.type();
+    }
+
+    public double[] getKernelParam() {
+        return kernel.param();
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * @return 不同的支持向量的个数
+     */
+    public int getSvCount() {
+        return svCount;
+    }
+
+    /**
+     * @return 子模型个数
+     */
+    public int getModelCount() {
+        return b.length;
+    }
+
+    /**
+     * @return 各子模型的支持向量个数之和，即不合并时预测需要计算的核函数个数
+     */
+    public int getTotalSvRefCount() {
+        int s = 0;
+        for (int[] ref : svRef) s += ref.length;
+        return s;
+    }
+
+    /**
+     * @param m 子模型序号
+     * @return 第m个子模型的支持向量在并集中的序号
+     */
+    public int[] getSvRef(int m) {
+        return svRef[m].clone();
+    }
+
+    public FeatureScaler getScaler() {
+        return scaler;
+    }
+}
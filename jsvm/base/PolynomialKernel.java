@@ -0,0 +1,40 @@
+package jsvm.base;
+
+/**
+ * k(xi, xj) = (gamma * xi * xj + coef0)^degree
+ */
+public final class PolynomialKernel extends DotProductKernel {
+    private final double gamma;
+    private final double coef0;
+    private final int degree;
+
+    /**
+     * @param param gamma, coef0, degree，degree为正整数
+     */
+    public PolynomialKernel(double... param) {
+        super(param);
+        if (!(param[2] >= 1 && param[2] == Math.rint(param[2]))) {
+            throw new IllegalArgumentException("degree必须为正整数 : " + param[2]);
+        }
+        this.gamma = param[0];
+        this.coef0 = param[1];
+        this.degree = (int) param[2];
+    }
+
+    @Override
+    public KernelType type() {
+        return KernelType.POLY;
+    }
+
+    @Override
+    protected double fromDot(double dot, double aa, double bb) {
+        //整数次幂用平方求幂，比Math.pow快
+        double base = gamma * dot + coef0;
+        double res = 1;
+        for (int d = degree; d > 0; d >>= 1) {
+            if ((d & 1) != 0) res *= base;
+            base *= base;
+        }
+        return res;
+    }
+}
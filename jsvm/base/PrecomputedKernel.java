@@ -0,0 +1,45 @@
+package jsvm.base;
+
+/**
+ * 用户预先计算的核矩阵，格式与libsvm的 -t 4 相同
+ * 每个样本为 [id, k(x, x_1), k(x, x_2), ..., k(x, x_M)]，其中id为该样本在训练集中从1开始的序号，
+ * x_1..x_M为全部训练样本，特征个数为M+1
+ * k(a, b) = b[id(a)]，a必须是训练样本，b可以是训练样本或待预测的样本(id不使用)
+ * 样本不能归一化，id在去重和筛选后保持不变，删除样本不影响其余样本
+ */
+public final class PrecomputedKernel implements Kernel {
+    private final double[] param;
+
+    /**
+     * @param param 不使用，随模型保存
+     */
+    public PrecomputedKernel(double... param) {
+        this.param = param.clone();
+    }
+
+    @Override
+    public KernelType type() {
+        return KernelType.PRECOMPUTED;
+    }
+
+    @Override
+    public double[] param() {
+        return param.clone();
+    }
+
+    @Override
+    public double apply(double[] a, int aOff, double[] b, int bOff, int n) {
+        return b[bOff + id(a[aOff], n)];
+    }
+
+    @Override
+    public double apply(SparseMatrix a, int i, SparseMatrix b, int k) {
+        return b.get(k, id(a.get(i, 0), b.getColumnDimension()));
+    }
+
+    private static int id(double v, int n) {
+        int id = (int) v;
+        if (id != v || id < 1 || id >= n) throw new IllegalArgumentException("预计算核的样本序号不正确 : " + v);
+        return id;
+    }
+}
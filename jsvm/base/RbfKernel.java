@@ -0,0 +1,45 @@
+package jsvm.base;
+
+/**
+ * k(xi, xj) = exp(-1 * ||xi - xj||^2  / theta^2)
+ * 一块对一块由 ||xi - xj||^2 = ||xi||^2 + ||xj||^2 - 2*xi*xj 得到，单个样本对直接计算距离
+ */
+public final class RbfKernel extends DotProductKernel {
+    private final boolean fast;
+    private final double gamma;
+
+    /**
+     * @param fast  是否使用FastMath.exp
+     * @param param theta
+     */
+    public RbfKernel(boolean fast, double... param) {
+        super(param);
+        if (!(param[0] != 0)) throw new IllegalArgumentException("theta不能为0 : " + param[0]);
+        this.fast = fast;
+        this.gamma = 1.0 / (param[0] * param[0]);
+    }
+
+    @Override
+    public KernelType type() {
+        return fast ? KernelType.RBF_FAST : KernelType.RBF;
+    }
+
+    @Override
+    protected boolean usesNorms() {
+        return true;
+    }
+
+    @Override
+    protected double fromDot(double dot, double aa, double bb) {
+        return exp(-Math.max(aa + bb - 2 * dot, 0) * gamma);
+    }
+
+    @Override
+    public double apply(double[] a, int aOff, double[] b, int bOff, int n) {
+        return exp(-DenseMatrix.squaredDistance(a, aOff, b, bOff, n) * gamma);
+    }
+
+    private double exp(double x) {
+        return fast ? FastMath.exp(x) : Math.exp(x);
+    }
+}
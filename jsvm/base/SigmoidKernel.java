@@ -0,0 +1,29 @@
+package jsvm.base;
+
+/**
+ * k(xi, xj) = tanh(gamma * xi * xj + coef0)
+ * 不一定是正定的，K不满足Mercer条件时SMO仍然可以运行，但不保证收敛到全局最优
+ */
+public final class SigmoidKernel extends DotProductKernel {
+    private final double gamma;
+    private final double coef0;
+
+    /**
+     * @param param gamma, coef0
+     */
+    public SigmoidKernel(double... param) {
+        super(param);
+        this.gamma = param[0];
+        this.coef0 = param[1];
+    }
+
+    @Override
+    public KernelType type() {
+        return KernelType.SIGMOID;
+    }
+
+    @Override
+    protected double fromDot(double dot, double aa, double bb) {
+        return Math.tanh(gamma * dot + coef0);
+    }
+}
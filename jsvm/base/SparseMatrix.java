@@ -0,0 +1,241 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.util.Arrays;
+
+/**
+ * CSR格式的稀疏矩阵
+ * 第i行的非零元素位于 [rowPtr[i], rowPtr[i+1])，列序号在行内递增
+ * 创建后不可修改
+ */
+public class SparseMatrix {
+    //行数 - m
+    private final int rowCount;
+    //列数 - n
+    private final int columnCount;
+    //行指针 - m+1
+    private final int[] rowPtr;
+    //列序号 - nnz
+    private final int[] colIdx;
+    //数值 - nnz
+    private final double[] values;
+    //每一行的平方范数 - m
+    private final double[] squaredNorms;
+
+    public SparseMatrix(int rowCount, int columnCount, int[] rowPtr, int[] colIdx, double[] values) {
+        if (rowPtr.length != rowCount + 1 || colIdx.length != values.length || rowPtr[rowCount] != values.length) {
+            throw new IllegalArgumentException("CSR数组长度不一致");
+        }
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+
+        this.squaredNorms = new double[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            double s = 0;
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                s += values[p] * values[p];
+            }
+            squaredNorms[i] = s;
+        }
+    }
+
+    /**
+     * @param A 稠密矩阵
+     * @return 只保存A中非零元素的稀疏矩阵
+     */
+    public static SparseMatrix fromDense(Matrix A) {
+        int m = A.getRowDimension();
+        int n = A.getColumnDimension();
+        double[][] arr = A.getArray();
+
+        int nnz = 0;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                if (arr[i][j] != 0) nnz++;
+            }
+        }
+
+        int[] rowPtr = new int[m + 1];
+        int[] colIdx = new int[nnz];
+        double[] values = new double[nnz];
+        int p = 0;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                if (arr[i][j] != 0) {
+                    colIdx[p] = j;
+                    values[p] = arr[i][j];
+                    p++;
+                }
+            }
+            rowPtr[i + 1] = p;
+        }
+        return new SparseMatrix(m, n, rowPtr, colIdx, values);
+    }
+
+    /**
+     * @return 稠密矩阵 m*n
+     */
+    public Matrix toDense() {
+        Matrix A = new Matrix(rowCount, columnCount);
+        double[][] arr = A.getArray();
+        for (int i = 0; i < rowCount; i++) {
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                arr[i][colIdx[p]] = values[p];
+            }
+        }
+        return A;
+    }
+
+    /**
+     * @param i 行序号
+     * @return 第i行 1*n
+     */
+    public SparseMatrix row(int i) {
+        return selectRows(new int[]{i});
+    }
+
+    /**
+     * @param rows 行序号
+     * @return 由指定行组成的稀疏矩阵
+     */
+    public SparseMatrix selectRows(int[] rows) {
+        int nnz = 0;
+        for (int i : rows) {
+            nnz += rowPtr[i + 1] - rowPtr[i];
+        }
+
+        int[] newRowPtr = new int[rows.length + 1];
+        int[] newColIdx = new int[nnz];
+        double[] newValues = new double[nnz];
+        int p = 0;
+        for (int k = 0; k < rows.length; k++) {
+            int i = rows[k];
+            int len = rowPtr[i + 1] - rowPtr[i];
+            System.arraycopy(colIdx, rowPtr[i], newColIdx, p, len);
+            System.arraycopy(values, rowPtr[i], newValues, p, len);
+            p += len;
+            newRowPtr[k + 1] = p;
+        }
+        return new SparseMatrix(rows.length, columnCount, newRowPtr, newColIdx, newValues);
+    }
+
+    /**
+     * @param other 列数相同的稀疏矩阵
+     * @return 在本矩阵之后追加other的各行得到的稀疏矩阵
+     */
+    public SparseMatrix appendRows(SparseMatrix other) {
+        if (other.columnCount != columnCount) {
+            throw new IllegalArgumentException("列数不一致 : " + columnCount + " , " + other.columnCount);
+        }
+        int nnz = getNonZeroCount();
+        int otherNnz = other.getNonZeroCount();
+        int[] newRowPtr = Arrays.copyOf(rowPtr, rowCount + other.rowCount + 1);
+        for (int k = 1; k <= other.rowCount; k++) {
+            newRowPtr[rowCount + k] = nnz + other.rowPtr[k];
+        }
+        int[] newColIdx = Arrays.copyOf(colIdx, nnz + otherNnz);
+        double[] newValues = Arrays.copyOf(values, nnz + otherNnz);
+        System.arraycopy(other.colIdx, 0, newColIdx, nnz, otherNnz);
+        System.arraycopy(other.values, 0, newValues, nnz, otherNnz);
+        return new SparseMatrix(rowCount + other.rowCount, columnCount, newRowPtr, newColIdx, newValues);
+    }
+
+    /**
+     * 两个稀疏行的内积，代价为两行非零元素个数之和
+     *
+     * @param i     本矩阵的行序号
+     * @param other 另一个稀疏矩阵
+     * @param k     other的行序号
+     * @return 内积
+     */
+    public double dot(int i, SparseMatrix other, int k) {
+        int p = rowPtr[i];
+        int pEnd = rowPtr[i + 1];
+        int q = other.rowPtr[k];
+        int qEnd = other.rowPtr[k + 1];
+
+        double s = 0;
+        while (p < pEnd && q < qEnd) {
+            int a = colIdx[p];
+            int b = other.colIdx[q];
+            if (a == b) {
+                s += values[p++] * other.values[q++];
+            } else if (a < b) {
+                p++;
+            } else {
+                q++;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * @param i 行序号
+     * @param x 稠密向量 长度为n
+     * @return 第i行与x的内积
+     */
+    public double dot(int i, double[] x) {
+        double s = 0;
+        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+            s += values[p] * x[colIdx[p]];
+        }
+        return s;
+    }
+
+    /**
+     * 行内二分查找
+     *
+     * @param i 行序号
+     * @param j 列序号
+     * @return 第i行第j列的元素
+     */
+    public double get(int i, int j) {
+        int p = Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i + 1], j);
+        return p >= 0 ? values[p] : 0;
+    }
+
+    /**
+     * dst += scale * 第i行
+     *
+     * @param i     行序号
+     * @param scale 系数
+     * @param dst   稠密向量 长度为n
+     */
+    public void addRowTo(int i, double scale, double[] dst) {
+        for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+            dst[colIdx[p]] += scale * values[p];
+        }
+    }
+
+    public double squaredNorm(int i) {
+        return squaredNorms[i];
+    }
+
+    public int getRowDimension() {
+        return rowCount;
+    }
+
+    public int getColumnDimension() {
+        return columnCount;
+    }
+
+    public int getNonZeroCount() {
+        return values.length;
+    }
+
+    public int[] getRowPointers() {
+        return rowPtr;
+    }
+
+    public int[] getColumnIndices() {
+        return colIdx;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+}
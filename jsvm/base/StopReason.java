@@ -0,0 +1,19 @@
+package jsvm.base;
+
+/**
+ * SMO结束的原因
+ */
+public enum StopReason {
+    //全集合遍历没有算子更新
+    NO_CHANGE,
+    //最大违反程度不超过kktTolerance
+    KKT_TOLERANCE,
+    //相对对偶间隙不超过dualityGap
+    DUALITY_GAP,
+    //达到最大迭代次数
+    MAX_ITERATION,
+    //达到时间限制，使用当前的解
+    TIME_BUDGET,
+    //最大违反对无法继续优化
+    NO_PROGRESS
+}
@@ -2,19 +2,45 @@ package jsvm.base;
 
 import Jama.Matrix;
 
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Created by zjr on 2017/5/7.
  */
 
-public abstract class SupportVectorMachine {
-    //用于存放训练样本集 - m*n
-    protected Matrix data;
-    //用于存放样本集对应的标签集 - m*1
-    protected Matrix labels;
+public abstract class SupportVectorMachine implements Kernelable {
+    //计算K时每次计算的列数
+    private static final int KERNEL_BLOCK = 64;
+    //默认的并行阈值，样本个数不少于该值时选择算子对和更新偏差按块并行
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+    //并行时每块的样本个数
+    private static final int PARALLEL_CHUNK = 8192;
+
+    //用于存放训练样本集 - m*n 按行连续存放
+    protected DenseMatrix data;
+    //稀疏训练样本集 - m*n，与data只有一个不为空
+    protected SparseMatrix sparseData;
+    //用于存放样本集对应的标签集 - m
+    protected double[] labels;
+    //去重后每个样本代表的原始样本个数，边界C按此放大 - m，为空时均为1
+    protected double[] weights;
+    //去重前每个样本在去重后的序号
+    private int[] sampleGroups;
+    //边界筛选丢弃的样本，训练后检查KKT条件 - d*n，与discardedSparse只有一个不为空
+    private DenseMatrix discardedData;
+    private SparseMatrix discardedSparse;
+    private double[] discardedLabels;
+    private double[] discardedWeights;
 
     //样本的个数 - m
     protected int sampleCount;
@@ -23,8 +49,8 @@ public abstract class SupportVectorMachine {
     //正类和父类的比例
     protected double rate;
 
-    //拉格朗日算子 - m*1
-    protected Matrix alphas;
+    //拉格朗日算子 - m
+    protected double[] alphas;
     //b
     protected double b;
     //w - n*1
@@ -32,22 +58,90 @@ public abstract class SupportVectorMachine {
 
     //SVM-SMO算法精确度
     protected double tolerance;
-    //缓存，用于存放计算过的偏差 m*2 flag : value
-    protected Matrix ECache;
+    //大于0时按最大违反对选择算子对，最大违反程度不超过该值时停止
+    private double kktTolerance;
+    //大于0时相对对偶间隙不超过该值时停止
+    private double dualityGap;
+    //大于0时计算K和SMO最多运行的时间
+    private long timeBudgetNanos;
+    //本次训练开始计算K的System.nanoTime()，时间限制从此开始计算，SMO使用后清除
+    private long budgetStart;
+    private boolean budgetStarted;
+    //一次更新中alphaJ的最小变化量
+    private double minAlphaStep = 0.00001;
+    //样本个数不少于该值且公共线程池有多个线程时并行
+    private int parallelThreshold = PARALLEL_THRESHOLD;
+    //最近一次SMO结束的原因
+    private StopReason stopReason;
+    //样本的偏差是否已经参与过优化，platt的启发式在这些样本中选择j - m
+    protected boolean[] ECache;
+    //所有样本的偏差 Ei = f(xi) - yi，每次更新算子对后增量更新 - m
+    protected double[] E;
     //矩阵K - m*m
-    protected Matrix K;
+    protected KernelMatrix K;
+    //多个训练器共享的核函数行缓存，为空时计算完整的K
+    private KernelRowCache kernelCache;
+    //本训练器的样本在共享缓存中的序号 - m
+    private int[] kernelCacheIdx;
+    //计算K时使用的核函数，不变时再次训练不重新计算K
+    private Kernel kernelOfK;
+    //核函数类型
+    private KernelType kernelType = KernelType.RBF;
+    //自定义核函数，为空时使用kernelType对应的内置核函数
+    private Kernel customKernel;
+    //当前参数下的核函数及其参数
+    private Kernel currentKernel;
+    private double[] currentKernelParam;
+    //指定的K的存放方式，为空时按可用内存选择
+    private KernelStrategy kernelStrategy;
+    //最近一次计算K时的计划
+    private KernelPlan kernelPlan;
+    //按内存预算缓存行时本训练器自己的缓存
+    private KernelRowCache ownCache;
     //Sv - count
     protected int svCount;
+    //支持向量在训练样本中的序号 - p
+    protected int[] svIdx;
     //Sv - p*n
-    protected Matrix svMat;
-    //Svlabels - p*1
-    protected Matrix svLabelsMat;
-    //SvAlphas - p*1
-    protected Matrix svAlphasMat;
+    protected DenseMatrix svMat;
+    //Svlabels - p
+    protected double[] svLabels;
+    //SvAlphas - p
+    protected double[] svAlphas;
+    //稀疏Sv - p*n
+    protected SparseMatrix svSparseMat;
+
+    //支持向量产生的w - p
+    protected double[] wSv;
+    //核函数参数
+    protected double[] kernelParam;
+    //特征归一化参数，预测时自动作用于输入样本
+    protected FeatureScaler scaler;
+    //训练得到的模型
+    protected SvmModel model;
+    //训练过程的监听器
+    private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+    //本训练器计算核函数的次数，使用共享缓存时由缓存统计
+    protected long kernelEvaluations;
 
     public SupportVectorMachine(Matrix data, Matrix labels) {
-        this.data = data;
-        this.labels = labels;
+        this.data = DenseMatrix.fromJama(data);
+        this.labels = labels.getColumnPackedCopy();
+        this.sampleCount = data.getRowDimension();
+        this.featureCount = data.getColumnDimension();
+
+        initSvm();
+    }
+
+    /**
+     * 使用稀疏样本集训练
+     *
+     * @param data   m*n
+     * @param labels m*1
+     */
+    public SupportVectorMachine(SparseMatrix data, Matrix labels) {
+        this.sparseData = data;
+        this.labels = labels.getColumnPackedCopy();
         this.sampleCount = data.getRowDimension();
         this.featureCount = data.getColumnDimension();
 
@@ -58,12 +152,674 @@ public abstract class SupportVectorMachine {
      * 初始化支持向量机
      */
     public void initSvm() {
-        this.alphas = new Matrix(sampleCount, 1, 0);//m*1
+        this.alphas = new double[sampleCount];//m
         this.w = new Matrix(featureCount, 1);//n*1
         this.b = 0;
         this.tolerance = 0.0001;
-        this.ECache = new Matrix(sampleCount, 2, 0);
-        this.K = new Matrix(sampleCount, sampleCount);
+        this.ECache = new boolean[sampleCount];
+    }
+
+    /**
+     * 从给定的拉格朗日算子开始优化，需要在train之前调用
+     * alphas需要满足 sum(alphai*yi) = 0 且不超过各自的边界C
+     *
+     * @param alphas 初始的拉格朗日算子 - m
+     * @param b      初始的b
+     */
+    public void warmStart(double[] alphas, double b) {
+        if (alphas.length != sampleCount) {
+            throw new IllegalArgumentException("样本个数不一致 : " + alphas.length + " , " + sampleCount);
+        }
+        this.alphas = alphas.clone();
+        this.b = b;
+    }
+
+    /**
+     * 与其他训练器共享核函数行缓存，需要在train之前调用
+     *
+     * @param cache     缓存
+     * @param sampleIdx 每个训练样本在缓存的样本集中的序号 - m
+     */
+    public void shareKernelCache(KernelRowCache cache, int[] sampleIdx) {
+        if (sampleIdx.length != sampleCount) {
+            throw new IllegalArgumentException("样本个数不一致 : " + sampleIdx.length + " , " + sampleCount);
+        }
+        this.kernelCache = cache;
+        this.kernelCacheIdx = sampleIdx.clone();
+    }
+
+    /**
+     * 按最大违反对选择算子对，需要在train之前调用
+     * 每次选择 max(Ek, k属于I_low) 和 min(Ek, k属于I_up) 对应的样本，两者之差不超过eps时停止，
+     * 这时所有样本在eps的精度内满足KKT条件，与b无关
+     * 此时每sampleCount次更新算作一次迭代
+     *
+     * @param eps 最大违反程度，不大于0时使用platt的启发式选择
+     */
+    public void setKktTolerance(double eps) {
+        this.kktTolerance = eps;
+    }
+
+    /**
+     * 每次迭代结束时计算相对对偶间隙，不超过gap时停止，需要在train之前调用
+     *
+     * @param gap 相对对偶间隙，不大于0时不检查
+     */
+    public void setDualityGap(double gap) {
+        this.dualityGap = gap;
+    }
+
+    /**
+     * 训练最多运行的时间，到时间后使用当前的解生成模型，需要在train之前调用
+     * 时间从计算K开始计算，包括K的计算和SMO，不包括之后计算支持向量和w；
+     * 计算K本身超过时间时SMO不再迭代，直接使用初始的解(或warmStart给出的解)
+     * SMO每次更新后目标函数都不减小，当前的解即为目前最好的解
+     *
+     * @param time 时间，不大于0时不限制
+     * @param unit 单位
+     */
+    public void setTimeBudget(long time, TimeUnit unit) {
+        this.timeBudgetNanos = unit.toNanos(time);
+    }
+
+    /**
+     * SMO每次更新都需要遍历全部样本选择下一对算子并更新偏差，样本很多时这两步按块在ForkJoin公共线程池中并行，
+     * 各块分别求最大值后按块的顺序合并，结果与串行完全相同
+     *
+     * @param threshold 样本个数不少于该值时并行，Integer.MAX_VALUE为不并行
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("并行阈值必须大于0 : " + threshold);
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * @return 最近一次SMO结束的原因
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public void addTrainingListener(TrainingListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeTrainingListener(TrainingListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param phase 结束的阶段
+     * @param start 阶段开始时的System.nanoTime()
+     */
+    protected void firePhase(TrainingPhase phase, long start) {
+        if (listeners.isEmpty()) return;
+        long nanos = System.nanoTime() - start;
+        for (TrainingListener listener : listeners) listener.onPhase(this, phase, nanos);
+    }
+
+    private void fireKernelPlan(KernelPlan plan) {
+        for (TrainingListener listener : listeners) listener.onKernelPlan(this, plan);
+    }
+
+    /**
+     * 一轮结束时统计状态，只在有监听器时计算，代价为O(m)
+     */
+    private void firePass(int pass, boolean entireSet, int alphaPairsChanged, long start) {
+        if (listeners.isEmpty()) return;
+        //W(alpha) = sum(alphai) - 1/2 * sum(alphai*yi*f(xi))，其中 f(xi) = Ei + yi - b
+        double sumAlpha = 0, sumAlphaYf = 0;
+        int sv = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            double alpha = alphas[i];
+            if (alpha > 0) {
+                double y = labels[i];
+                sv++;
+                sumAlpha += alpha;
+                sumAlphaYf += alpha * y * (E[i] + y - b);
+            }
+        }
+        KernelRowCache cache = kernelCache != null ? kernelCache : ownCache;
+        long evaluations = cache == null ? kernelEvaluations : kernelEvaluations + cache.getEvaluations();
+        double hitRate = cache == null ? Double.NaN : cache.getHitRate();
+        TrainingPass stats = new TrainingPass(pass, entireSet, alphaPairsChanged, calcMaxViolation(),
+                sumAlpha - sumAlphaYf / 2, calcDualityGap(), sv, evaluations, hitRate, System.nanoTime() - start);
+        for (TrainingListener listener : listeners) listener.onPass(this, stats);
+    }
+
+    /**
+     * 对训练样本进行归一化，需要在train之前调用
+     * 稠密样本直接在data上修改，不复制
+     * 归一化参数随模型保存，predict时自动作用于输入样本
+     *
+     * @param type 归一化方式
+     * @return 归一化参数
+     */
+    public FeatureScaler normalize(FeatureScaler.Type type) {
+        if (sparseData == null) {
+            FeatureScaler.Fitter fitter = new FeatureScaler.Fitter(featureCount, type);
+            for (int i = 0; i < sampleCount; i++) {
+                fitter.add(data.getData(), data.rowOffset(i));
+            }
+            scaler = fitter.build();
+            scaler.transformInPlace(data.getData(), 0, sampleCount);
+        } else {
+            scaler = FeatureScaler.fit(sparseData, type);
+            sparseData = scaler.transform(sparseData);
+        }
+        return scaler;
+    }
+
+    /**
+     * 训练样本已经在外部归一化时设置归一化参数
+     *
+     * @param scaler 归一化参数
+     */
+    public void setScaler(FeatureScaler scaler) {
+        this.scaler = scaler;
+    }
+
+    public FeatureScaler getScaler() {
+        return scaler;
+    }
+
+    /**
+     * 合并重复的样本，需要在train之前调用，已经归一化时在归一化之后调用
+     * 特征和标签都相同的样本合并为一个，权重为合并的个数，边界C乘以权重，
+     * 合并的样本的算子之和即为合并后的算子，得到的模型与在全部样本上训练的相同
+     * quantum大于0时特征按quantum取整后相同的样本也合并，以组内第一个样本代表整组，
+     * 每个特征与被合并的样本相差不超过quantum，模型是近似的
+     *
+     * @param quantum 取整的精度，不大于0时只合并完全相同的样本
+     * @return 合并后的样本个数
+     */
+    public int deduplicate(double quantum) {
+        if (K != null || kernelCache != null) throw new IllegalStateException("需要在train之前调用");
+        DuplicateRows dup = sparseData == null ? DuplicateRows.of(data, labels, quantum)
+                : DuplicateRows.of(sparseData, labels, quantum);
+        int[] keep = dup.first;
+        int m = keep.length;
+
+        double[] newWeights = new double[m];
+        double[] newLabels = new double[m];
+        double[] newAlphas = new double[m];
+        for (int r = 0; r < m; r++) {
+            newLabels[r] = labels[keep[r]];
+        }
+        for (int i = 0; i < sampleCount; i++) {
+            int g = dup.groupOf[i];
+            //已经合并过的样本按原来的权重累加，warmStart的算子同样合并
+            newWeights[g] += weight(i);
+            newAlphas[g] += alphas[i];
+        }
+        if (sparseData == null) {
+            data = data.selectRows(keep);
+        } else {
+            sparseData = sparseData.selectRows(keep);
+        }
+        if (sampleGroups == null) {
+            sampleGroups = dup.groupOf;
+        } else {
+            for (int i = 0; i < sampleGroups.length; i++) sampleGroups[i] = dup.groupOf[sampleGroups[i]];
+        }
+        labels = newLabels;
+        alphas = newAlphas;
+        weights = newWeights;
+        ECache = new boolean[m];
+        sampleCount = m;
+        return m;
+    }
+
+    /**
+     * 只保留可能成为支持向量的样本，需要在train之前调用，已经归一化时在归一化之后调用
+     * 丢弃的样本被保存下来，训练后用checkDiscarded检查，违反KKT条件的用restoreDiscarded加回再训练
+     *
+     * @param filter 筛选方式
+     * @return 保留的样本个数，丢弃的个数由getDiscardedCount得到
+     */
+    public int filterBoundary(BoundaryFilter filter) {
+        if (K != null || kernelCache != null) throw new IllegalStateException("需要在train之前调用");
+        int[] keep = sparseData == null ? filter.select(data, labels) : filter.select(sparseData, labels);
+        boolean[] kept = new boolean[sampleCount];
+        for (int i : keep) kept[i] = true;
+        int[] drop = IntStream.range(0, sampleCount).filter(i -> !kept[i]).toArray();
+
+        discardedLabels = new double[drop.length];
+        for (int r = 0; r < drop.length; r++) discardedLabels[r] = labels[drop[r]];
+        discardedWeights = null;
+        if (weights != null) {
+            discardedWeights = new double[drop.length];
+            for (int r = 0; r < drop.length; r++) discardedWeights[r] = weights[drop[r]];
+            double[] newWeights = new double[keep.length];
+            for (int r = 0; r < keep.length; r++) newWeights[r] = weights[keep[r]];
+            weights = newWeights;
+        }
+        if (sparseData == null) {
+            discardedData = data.selectRows(drop);
+            data = data.selectRows(keep);
+        } else {
+            discardedSparse = sparseData.selectRows(drop);
+            sparseData = sparseData.selectRows(keep);
+        }
+
+        double[] newLabels = new double[keep.length];
+        double[] newAlphas = new double[keep.length];
+        for (int r = 0; r < keep.length; r++) {
+            newLabels[r] = labels[keep[r]];
+            newAlphas[r] = alphas[keep[r]];
+        }
+        labels = newLabels;
+        alphas = newAlphas;
+        ECache = new boolean[keep.length];
+        sampleGroups = null;
+        sampleCount = keep.length;
+        return keep.length;
+    }
+
+    /**
+     * @return 边界筛选丢弃且尚未加回的样本个数
+     */
+    public int getDiscardedCount() {
+        return discardedLabels == null ? 0 : discardedLabels.length;
+    }
+
+    /**
+     * 检查边界筛选丢弃的样本，算子为0的样本需要满足 yi*(f(xi)+b) >= 1
+     *
+     * @param eps 允许的误差
+     * @return 违反KKT条件的样本在丢弃的样本中的序号，长度即违反的个数
+     */
+    public int[] checkDiscarded(double eps) {
+        if (model == null) throw new IllegalStateException("模型尚未训练");
+        return IntStream.range(0, getDiscardedCount()).filter(r -> {
+            double fx = discardedSparse == null ? calcFx(discardedData.getData(), discardedData.rowOffset(r))
+                    : calcFx(discardedSparse.row(r));
+            return discardedLabels[r] * (fx + b) < 1 - eps;
+        }).toArray();
+    }
+
+    /**
+     * 将丢弃的样本加回训练样本，之后以相同的参数调用train即可从当前的解继续优化
+     *
+     * @param idx 在丢弃的样本中的序号，一般为checkDiscarded的结果
+     * @return 训练样本个数
+     */
+    public int restoreDiscarded(int[] idx) {
+        if (idx.length == 0) return sampleCount;
+        Matrix y = new Matrix(idx.length, 1);
+        for (int t = 0; t < idx.length; t++) y.set(t, 0, discardedLabels[idx[t]]);
+        int first = sampleCount;
+        checkIncremental(featureCount, idx.length, y);
+        if (discardedSparse == null) {
+            appendRows(discardedData.selectRows(idx), y);
+        } else {
+            appendRows(discardedSparse.selectRows(idx), y);
+        }
+        if (discardedWeights != null) {
+            for (int t = 0; t < idx.length; t++) weights[first + t] = discardedWeights[idx[t]];
+        }
+
+        boolean[] restored = new boolean[discardedLabels.length];
+        for (int r : idx) restored[r] = true;
+        int[] rest = IntStream.range(0, discardedLabels.length).filter(r -> !restored[r]).toArray();
+        double[] restLabels = new double[rest.length];
+        for (int r = 0; r < rest.length; r++) restLabels[r] = discardedLabels[rest[r]];
+        if (discardedWeights != null) {
+            double[] restWeights = new double[rest.length];
+            for (int r = 0; r < rest.length; r++) restWeights[r] = discardedWeights[rest[r]];
+            discardedWeights = restWeights;
+        }
+        if (discardedSparse == null) {
+            discardedData = discardedData.selectRows(rest);
+        } else {
+            discardedSparse = discardedSparse.selectRows(rest);
+        }
+        discardedLabels = restLabels;
+        return sampleCount;
+    }
+
+    /**
+     * @param i 样本序号
+     * @return 第i个样本代表的原始样本个数
+     */
+    protected double weight(int i) {
+        return weights == null ? 1 : weights[i];
+    }
+
+    /**
+     * @return 每个样本代表的原始样本个数 - m，未去重时为空
+     */
+    public double[] getWeights() {
+        return weights == null ? null : weights.clone();
+    }
+
+    /**
+     * @return 去重前的每个样本在当前样本中的序号，未去重时为空
+     */
+    public int[] getSampleGroups() {
+        return sampleGroups == null ? null : sampleGroups.clone();
+    }
+
+    /**
+     * 计算核函数转化矩阵K
+     * m*m
+     */
+    protected void calcKernelMatrix() {
+        long start = System.nanoTime();
+        budgetStart = start;
+        budgetStarted = true;
+        try {
+            buildKernelMatrix();
+        } finally {
+            firePhase(TrainingPhase.KERNEL_MATRIX, start);
+        }
+    }
+
+    private void buildKernelMatrix() {
+        if (kernelType() == KernelType.PRECOMPUTED && scaler != null) {
+            throw new IllegalStateException("预计算核的样本不能归一化");
+        }
+        if (kernelCache != null) {
+            K = kernelCache.view(kernelCacheIdx, this, kernelParam);
+            return;
+        }
+        //增量训练时K已经随样本追加和删除更新
+        Kernel kernel = currentKernel();
+        if (K != null && K.size() == sampleCount && kernel == kernelOfK) return;
+        //先释放之前的K再估计可用内存
+        K = null;
+        ownCache = null;
+        kernelPlan = kernelStrategy == null ? KernelPlan.plan(sampleCount, featureCount)
+                : KernelPlan.of(kernelStrategy, sampleCount, featureCount);
+        fireKernelPlan(kernelPlan);
+        double[] norms = sparseData == null ? kernel.norms(data) : null;
+        K = buildKernelMatrix(kernelPlan, norms);
+        kernelOfK = kernel;
+    }
+
+    private KernelMatrix buildKernelMatrix(KernelPlan plan, double[] norms) {
+        switch (plan.getStrategy()) {
+            case DENSE:
+                try {
+                    double[][] columns = new double[sampleCount][];
+                    for (int from = 0; from < sampleCount; from += KERNEL_BLOCK) {
+                        int to = Math.min(sampleCount, from + KERNEL_BLOCK);
+                        System.arraycopy(kernelColumns(norms, from, to), 0, columns, from, to - from);
+                    }
+                    return new DenseKernelMatrix(columns);
+                } catch (OutOfMemoryError e) {
+                    //估计的可用内存不准确，放弃已经分配的列后改为行缓存
+                    kernelPlan = plan.fallback(KernelStrategy.ROW_CACHE, "完整的K分配失败");
+                    fireKernelPlan(kernelPlan);
+                    return buildKernelMatrix(kernelPlan, norms);
+                }
+            case MAPPED:
+                try {
+                    MappedKernelMatrix mapped = new MappedKernelMatrix(sampleCount);
+                    for (int from = 0; from < sampleCount; from += KERNEL_BLOCK) {
+                        int to = Math.min(sampleCount, from + KERNEL_BLOCK);
+                        double[][] block = kernelColumns(norms, from, to);
+                        for (int i = from; i < to; i++) mapped.setColumn(i, block[i - from]);
+                    }
+                    return mapped;
+                } catch (IOException e) {
+                    kernelPlan = plan.fallback(KernelStrategy.ROW_CACHE, "无法映射临时文件 : " + e.getMessage());
+                    fireKernelPlan(kernelPlan);
+                    return buildKernelMatrix(kernelPlan, norms);
+                }
+            case LOW_RANK:
+                return LowRankKernelMatrix.nystrom(sampleCount, plan.getRank(), sampleCount,
+                        i -> kernelColumns(norms, i, i + 1)[0]);
+            default:
+                ownCache = sparseData == null ? new KernelRowCache(data, plan.getCacheRows())
+                        : new KernelRowCache(sparseData, plan.getCacheRows());
+                return ownCache.view(IntStream.range(0, sampleCount).toArray(), this, kernelParam);
+        }
+    }
+
+    /**
+     * 第from到to-1个样本的K的列
+     * 稠密样本由核函数按块计算，与模型预测时使用的核函数一致
+     *
+     * @param norms 核函数预先计算的稠密样本的范数，可以为空
+     * @return (to-from)*m
+     */
+    private double[][] kernelColumns(double[] norms, int from, int to) {
+        kernelEvaluations += (long) (to - from) * sampleCount;
+        if (sparseData == null) return KernelFunctions.kernelColumns(currentKernel(), data, norms, from, to);
+        return sparseColumns(from, to);
+    }
+
+    private double[][] sparseColumns(int from, int to) {
+        Kernel kernel = currentKernel();
+        int m = sparseData.getRowDimension();
+        double[][] columns = new double[to - from][];
+        for (int i = from; i < to; i++) {
+            columns[i - from] = new double[m];
+            kernel.rows(sparseData, 0, m, sparseData, i, columns[i - from]);
+        }
+        return columns;
+    }
+
+    /**
+     * @return 当前核函数参数下的核函数，参数不变时复用同一个实例
+     */
+    private Kernel currentKernel() {
+        if (currentKernel == null || !Arrays.equals(kernelParam, currentKernelParam)) {
+            currentKernel = kernel(kernelParam);
+            currentKernelParam = kernelParam.clone();
+        }
+        return currentKernel;
+    }
+
+    /**
+     * 选择核函数，需要在train之前调用，训练得到的模型使用相同的核函数
+     * RBF_FAST与RBF的参数相同，用FastMath.exp代替Math.exp，预测时exp的开销约减少三分之一
+     *
+     * @param type 核函数类型
+     */
+    public void setKernelType(KernelType type) {
+        if (type == null) throw new IllegalArgumentException("核函数类型不能为空");
+        this.kernelType = type;
+        this.currentKernel = null;
+    }
+
+    /**
+     * 使用自定义核函数，需要在train之前调用，为空时恢复为setKernelType选择的内置核函数
+     * 自定义核函数的参数由其自身决定，train中的核函数参数不再传给核函数
+     * 保存模型时只保存type和param，加载后为相同类型的内置核函数
+     *
+     * @param kernel 核函数
+     */
+    public void setKernel(Kernel kernel) {
+        this.customKernel = kernel;
+        this.currentKernel = null;
+    }
+
+    @Override
+    public KernelType kernelType() {
+        return customKernel != null ? customKernel.type() : kernelType;
+    }
+
+    @Override
+    public Kernel kernel(double... param) {
+        return customKernel != null ? customKernel : Kernel.of(kernelType, param);
+    }
+
+    /**
+     * 指定矩阵K的存放方式，需要在train之前调用
+     *
+     * @param strategy 存放方式，为空时由KernelPlan根据可用内存选择
+     */
+    public void setKernelStrategy(KernelStrategy strategy) {
+        this.kernelStrategy = strategy;
+    }
+
+    /**
+     * @return 最近一次计算K时的计划，使用共享缓存或尚未训练时为空
+     */
+    public KernelPlan getKernelPlan() {
+        return kernelPlan;
+    }
+
+    /**
+     * 增量训练 : 追加新样本，新样本的拉格朗日算子为0
+     * 只计算新样本与全部样本的核函数，之后以相同的参数调用train即可从当前的解继续优化
+     * 已经归一化时新样本使用相同的归一化参数
+     *
+     * @param x 新样本 k*n
+     * @param y 标签 k*1
+     */
+    public void addSamples(Matrix x, Matrix y) {
+        if (sparseData != null) {
+            addSamples(SparseMatrix.fromDense(x), y);
+            return;
+        }
+        checkIncremental(x.getColumnDimension(), x.getRowDimension(), y);
+        DenseMatrix newRows = DenseMatrix.fromJama(x);
+        if (scaler != null) scaler.transformInPlace(newRows.getData(), 0, newRows.rows());
+        appendRows(newRows, y);
+    }
+
+    /**
+     * @param newRows 已经归一化的新样本 k*n
+     */
+    private void appendRows(DenseMatrix newRows, Matrix y) {
+        int k = newRows.rows();
+        int newCount = sampleCount + k;
+        data = data.appendRows(newRows);
+
+        kernelEvaluations += (long) k * newCount;
+        Kernel kernel = currentKernel();
+        double[][] newColumns = KernelFunctions.kernelColumns(kernel, data, kernel.norms(data), sampleCount, newCount);
+        appendSamples(y, newColumns);
+    }
+
+    /**
+     * 增量训练 : 追加新的稀疏样本
+     *
+     * @param x 新样本 k*n
+     * @param y 标签 k*1
+     */
+    public void addSamples(SparseMatrix x, Matrix y) {
+        if (sparseData == null) {
+            addSamples(x.toDense(), y);
+            return;
+        }
+        checkIncremental(x.getColumnDimension(), x.getRowDimension(), y);
+        appendRows(scaler == null ? x : scaler.transform(x), y);
+    }
+
+    /**
+     * @param x 已经归一化的新样本 k*n
+     */
+    private void appendRows(SparseMatrix x, Matrix y) {
+        int k = x.getRowDimension();
+        sparseData = sparseData.appendRows(x);
+
+        kernelEvaluations += (long) k * (sampleCount + k);
+        appendSamples(y, sparseColumns(sampleCount, sampleCount + k));
+    }
+
+    private void checkIncremental(int n, int k, Matrix y) {
+        if (!(K instanceof DenseKernelMatrix) || K.size() != sampleCount) {
+            throw new IllegalStateException("增量训练需要先完成一次训练，且K需要完整保存在堆内");
+        }
+        if (n != featureCount) throw new IllegalArgumentException("特征个数不一致 : " + featureCount + " , " + n);
+        if (y.getRowDimension() != k) throw new IllegalArgumentException("标签个数不一致 : " + k + " , " + y.getRowDimension());
+    }
+
+    private void appendSamples(Matrix y, double[][] newColumns) {
+        int k = newColumns.length;
+        int newCount = sampleCount + k;
+        ((DenseKernelMatrix) K).append(newColumns);
+
+        labels = Arrays.copyOf(labels, newCount);
+        alphas = Arrays.copyOf(alphas, newCount);
+        for (int t = 0; t < k; t++) {
+            labels[sampleCount + t] = y.get(t, 0);
+        }
+        if (weights != null) {
+            weights = Arrays.copyOf(weights, newCount);
+            Arrays.fill(weights, sampleCount, newCount, 1);
+        }
+        //已有样本的偏差仍然有效，新样本尚未计算
+        ECache = Arrays.copyOf(ECache, newCount);
+        sampleCount = newCount;
+    }
+
+    /**
+     * 增量训练 : 去掉部分样本
+     * 去掉的样本的算子不为0时，按比例缩小另一类的算子使 sum(alphai*yi) = 0 仍然成立，
+     * 之后以相同的参数调用train即可恢复KKT条件
+     *
+     * @param idx 样本序号
+     */
+    public void removeSamples(int[] idx) {
+        if (!(K instanceof DenseKernelMatrix) || K.size() != sampleCount) {
+            throw new IllegalStateException("增量训练需要先完成一次训练，且K需要完整保存在堆内");
+        }
+        boolean[] removed = new boolean[sampleCount];
+        for (int i : idx) removed[i] = true;
+        int[] keep = IntStream.range(0, sampleCount).filter(i -> !removed[i]).toArray();
+        if (keep.length == sampleCount) return;
+
+        double[] alphaArr = alphas.clone();
+        double[] labelArr = labels;
+        //去掉的样本的 sum(alphai*yi)
+        double s = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            if (removed[i]) s += alphaArr[i] * labelArr[i];
+        }
+        if (s != 0) {
+            //s > 0时负类剩余的算子之和需要减少s，反之正类减少-s
+            double side = s > 0 ? -1 : 1;
+            double total = 0;
+            for (int i : keep) {
+                if (labelArr[i] == side) total += alphaArr[i];
+            }
+            double factor = total > 0 ? Math.max(0, (total - Math.abs(s)) / total) : 0;
+            for (int i : keep) {
+                if (labelArr[i] == side) alphaArr[i] *= factor;
+            }
+            //算子不足以抵消时从0开始
+            if (total < Math.abs(s)) Arrays.fill(alphaArr, 0);
+        }
+
+        int m = keep.length;
+        double[] newAlphas = new double[m];
+        double[] newLabels = new double[m];
+        for (int r = 0; r < m; r++) {
+            newAlphas[r] = alphaArr[keep[r]];
+            newLabels[r] = labelArr[keep[r]];
+        }
+        if (weights != null) {
+            double[] newWeights = new double[m];
+            for (int r = 0; r < m; r++) newWeights[r] = weights[keep[r]];
+            weights = newWeights;
+        }
+        if (sparseData != null) {
+            sparseData = sparseData.selectRows(keep);
+        } else {
+            data = data.selectRows(keep);
+        }
+        ((DenseKernelMatrix) K).retain(keep);
+        alphas = newAlphas;
+        labels = newLabels;
+        //算子改变后缓存的偏差失效
+        ECache = new boolean[m];
+        //去掉样本后原来的序号不再对应
+        sampleGroups = null;
+        sampleCount = m;
+    }
+
+    /**
+     * 增量训练 : 去掉最早加入的count个样本
+     *
+     * @param count 样本个数
+     */
+    public void retireOldest(int count) {
+        removeSamples(IntStream.range(0, Math.min(count, sampleCount)).toArray());
     }
 
     /**
@@ -104,10 +860,60 @@ public abstract class SupportVectorMachine {
      * @return 偏差
      */
     protected double calcEk(int i) {
-        Matrix x = alphas.arrayTimes(labels).transpose();//1*m
-        Matrix Ki = K.getMatrix(0, sampleCount - 1, i, i);//K矩阵的第i列
-        double f_Xk = x.times(Ki).get(0, 0) + b;
-        return f_Xk - labels.get(i, 0);
+        return E[i];
+    }
+
+    /**
+     * 根据当前的算子计算所有样本的偏差
+     * 只有非零算子对应的列参与计算，热启动时代价为 O(支持向量个数*m)
+     */
+    protected void initErrors() {
+        E = new double[sampleCount];
+        for (int k = 0; k < sampleCount; k++) {
+            E[k] = b - labels[k];
+        }
+        for (int i = 0; i < sampleCount; i++) {
+            double c = alphas[i] * labels[i];
+            if (c == 0) continue;
+            double[] Ki = K.column(i);//K矩阵的第i列
+            for (int k = 0; k < sampleCount; k++) {
+                E[k] += c * Ki[k];
+            }
+        }
+    }
+
+    /**
+     * 算子对i、j以及b更新后，所有样本的偏差的变化为
+     * deltaEk = yi*deltaI*K(i,k) + yj*deltaJ*K(j,k) + deltaB
+     */
+    protected void updateErrors(int i, double deltaI, int j, double deltaJ, double deltaB) {
+        double ci = labels[i] * deltaI;
+        double cj = labels[j] * deltaJ;
+        double[] Ki = K.column(i);
+        double[] Kj = K.column(j);
+        if (parallel()) {
+            IntStream.range(0, chunkCount()).parallel().forEach(c -> updateErrors(ci, Ki, cj, Kj, deltaB,
+                    c * PARALLEL_CHUNK, Math.min(sampleCount, (c + 1) * PARALLEL_CHUNK)));
+        } else {
+            updateErrors(ci, Ki, cj, Kj, deltaB, 0, sampleCount);
+        }
+    }
+
+    private void updateErrors(double ci, double[] Ki, double cj, double[] Kj, double deltaB, int from, int to) {
+        for (int k = from; k < to; k++) {
+            E[k] += ci * Ki[k] + cj * Kj[k] + deltaB;
+        }
+    }
+
+    /**
+     * @return 是否按块并行
+     */
+    private boolean parallel() {
+        return sampleCount >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    private int chunkCount() {
+        return (sampleCount + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
     }
 
     /**
@@ -116,9 +922,7 @@ public abstract class SupportVectorMachine {
      * @param i 样本序号
      */
     protected void updateECache(int i) {
-        double Ei = calcEk(i);
-        ECache.set(i, 0, 1);
-        ECache.set(i, 1, Ei);
+        ECache[i] = true;
     }
 
     /**
@@ -129,36 +933,50 @@ public abstract class SupportVectorMachine {
      * @return j
      */
     private int selectJ(int i, double Ei) {
+        ECache[i] = true;
+
+        Best best = parallel()
+                ? IntStream.range(0, chunkCount()).parallel()
+                .mapToObj(c -> selectJ(i, Ei, c * PARALLEL_CHUNK, Math.min(sampleCount, (c + 1) * PARALLEL_CHUNK)))
+                .reduce(Best::merge).get()
+                : selectJ(i, Ei, 0, sampleCount);
+        //存在一个步长最大的j
+        return best.idx >= 0 ? best.idx : selectRandomJ(i);
+    }
+
+    private Best selectJ(int i, double Ei, int from, int to) {
         int maxIdx = -1;
         double maxDeltaE = -1;
+        //ECache中序号为i的样本为计算过的，需要其他有效的样本
+        for (int k = from; k < to; k++) {
+            if (k == i || !ECache[k]) continue;
+            double deltaE = Math.abs(Ei - E[k]);
+            if (deltaE > maxDeltaE) {
+                maxDeltaE = deltaE;
+                maxIdx = k;
+            }
+        }
+        return new Best(maxDeltaE, maxIdx);
+    }
 
-        ECache.set(i, 0, 1);
-        ECache.set(i, 1, Ei);
-
-        LinkedList<Integer> validECacheList = new LinkedList<>();
+    /**
+     * 一块样本中的最大值及其序号，合并时相等取前一块的，与串行时取序号最小的一致
+     */
+    private static final class Best {
+        private double value;
+        private int idx;
 
-        for (int k = 0; k < sampleCount; k++) {
-            if (ECache.get(k, 0) == 1) {
-                validECacheList.add(k);
-            }
+        private Best(double value, int idx) {
+            this.value = value;
+            this.idx = idx;
         }
 
-        //validECacheList中序号为i的样本为计算过的
-        //因此需要validECacheList的长度大于1
-        if (validECacheList.size() > 1) {
-            for (Integer idx : validECacheList) {
-                if (idx == i) continue;
-                double Ek = calcEk(idx);
-                double deltaE = Math.abs(Ei - Ek);
-                if (deltaE > maxDeltaE) {
-                    maxDeltaE = deltaE;
-                    maxIdx = idx;
-                }
+        private Best merge(Best other) {
+            if (other.value > value) {
+                value = other.value;
+                idx = other.idx;
             }
-            //存在一个步长最大的j
-            return maxIdx;
-        } else {
-            return selectRandomJ(i);
+            return this;
         }
     }
 
@@ -175,6 +993,8 @@ public abstract class SupportVectorMachine {
 
 
     /**
+     * 去重后需要乘以weight(i)
+     *
      * @param i 样本序号
      * @return 边界参数C
      */
@@ -194,8 +1014,8 @@ public abstract class SupportVectorMachine {
         // alpha < C 此时为支持向量，但是yi*ui < 1 <-> yi*ei < 0, 实际上为加入松弛变量的样本
         // yi*ei = yi*(ui - yi) = yi*ui - 1 因此只需要判断yi*ei的正负即可
         //在一定精度内满足条件即可
-        double alphaIOld = alphas.get(i, 0);
-        double labelI = labels.get(i, 0);
+        double alphaIOld = alphas[i];
+        double labelI = labels[i];
         double YiEi = labelI * Ei;
 
         //判断KKT之前，需要计算alpha的边界
@@ -209,109 +1029,158 @@ public abstract class SupportVectorMachine {
             //样本i对应的拉格朗日算子不符合KKT条件
             //选择此时开始将工作集大小限定为2
             int j = selectJ(i, Ei);
-            double Ej = calcEk(j);
-            double labelJ = labels.get(j, 0);
-            double alphaJOld = alphas.get(j, 0);
-            double Cj = calcBoundC(j);
-
-            //确定alphaJ的上下界
-            double L, H;
-            double s = labelI * labelJ;
-
-            if (s == -1) {
-                //yi != yj
-                L = Math.max(0, alphaJOld - alphaIOld);
-                H = Math.min(Cj, Ci + alphaJOld - alphaIOld);
-            } else {
-                //yi == yj
-                //Ci == Cj
-                L = Math.max(0, alphaJOld + alphaIOld - Ci);
-                H = Math.min(Ci, alphaJOld + alphaIOld);
-            }
+            return takeStep(i, j);
+        } else {
+            //满足KKT条件
+            return 0;
+        }
+    }
 
-            //此时alpha不能被优化
-            if (L == H) return 0;
+    /**
+     * 联合优化算子对 i - j，同时更新b和所有样本的偏差
+     *
+     * @param i 样本序号
+     * @param j 样本序号
+     * @return 更新算子对的个数
+     */
+    protected int takeStep(int i, int j) {
+        if (i == j) return 0;
+        double Ei = calcEk(i);
+        double alphaIOld = alphas[i];
+        double labelI = labels[i];
+        double Ci = calcBoundC(i);
 
-            //确定下来的两个样本的alpha在一条直线上
-            //此时只需要将一个变量固定，便成为了单变量的线性规划问题
-            double eta = calcEta(i, j);
+        double Ej = calcEk(j);
+        double labelJ = labels[j];
+        double alphaJOld = alphas[j];
+        double Cj = calcBoundC(j);
 
-            //不存在极大值
-            if (eta >= 0) return 0;
+        //确定alphaJ的上下界
+        double L, H;
+        double s = labelI * labelJ;
 
-            double alphaINew;
-            double alphaJNew;
+        if (s == -1) {
+            //yi != yj
+            L = Math.max(0, alphaJOld - alphaIOld);
+            H = Math.min(Cj, Ci + alphaJOld - alphaIOld);
+        } else {
+            //yi == yj，去重后同类样本的Ci和Cj也可能不同
+            L = Math.max(0, alphaJOld + alphaIOld - Ci);
+            H = Math.min(Cj, alphaJOld + alphaIOld);
+        }
 
+        //此时alpha不能被优化
+        if (L == H) return 0;
 
-            if (eta == 0) {
-                //目标函数由凸函数退化直线
-                //W(alphaJ) = yj*(Ej-Ei)*alphaJ+const
-                //带入alphaJ的两个端点L/H计算取最小值
-                double p = labelJ * (Ej - Ei) * L;
-                double q = labelJ * (Ej - Ei) * H;
+        //确定下来的两个样本的alpha在一条直线上
+        //此时只需要将一个变量固定，便成为了单变量的线性规划问题
+        double eta = calcEta(i, j);
 
-                alphaJNew = p < q ? L : H;
+        //不存在极大值，eta == 0 时(例如两个样本相同)目标函数为直线，取端点
+        if (eta > 0) return 0;
 
-            } else {
-                //eta < 0
-                alphaJNew = alphaJOld + labelJ * (Ej - Ei) / eta;
-                alphaJNew = limitAlpha(alphaJNew, L, H);
-            }
+        double alphaINew;
+        double alphaJNew;
 
-            //更新alpha及缓存Ek
-            alphas.set(j, 0, alphaJNew);
-            updateECache(j);
 
-            //优化量太小
-            if (Math.abs(alphaJNew - alphaJOld) < 0.00001) return 0;
+        if (eta == 0) {
+            //目标函数由凸函数退化直线
+            //W(alphaJ) = yj*(Ej-Ei)*alphaJ+const
+            //带入alphaJ的两个端点L/H计算取最小值
+            double p = labelJ * (Ej - Ei) * L;
+            double q = labelJ * (Ej - Ei) * H;
 
-            alphaINew = alphaIOld + (alphaJOld - alphaJNew) * s;
-            alphas.set(i, 0, alphaINew);
-            updateECache(i);
+            alphaJNew = p < q ? L : H;
 
-            double deltaI = alphaINew - alphaIOld;
-            double deltaJ = alphaJNew - alphaJOld;
+        } else {
+            //eta < 0
+            alphaJNew = alphaJOld + labelJ * (Ej - Ei) / eta;
+            alphaJNew = limitAlpha(alphaJNew, L, H);
+        }
 
-            //double b1 = b - (Ei + deltaI * labelI * K.get(i, i) + deltaJ * labelJ * K.get(j, i))
-            double b1 = b - Ei - deltaI * labelI * K.get(i, i) - deltaJ * labelJ * K.get(i, j);
-            double b2 = b - Ej - deltaI * labelI * K.get(i, j) - deltaJ * labelJ * K.get(j, j);
+        //优化量太小，不更新
+        if (Math.abs(alphaJNew - alphaJOld) <= minAlphaStep) return 0;
 
-            //优化后的b由不在边界上的算子决定
-            if (alphaINew > 0 && alphaINew < Ci) {
-                b = b1;
-            } else if (alphaJNew > 0 && alphaJNew < Cj) {
-                b = b2;
-            } else {
-                b = (b1 + b2) / 2.0;
-            }
+        alphaINew = alphaIOld + (alphaJOld - alphaJNew) * s;
+        //舍入误差使alphaI非常接近边界时取边界值，否则会被当作边界内的算子反复选中
+        if (alphaINew < Ci * 1e-12) alphaINew = 0;
+        else if (alphaINew > Ci * (1 - 1e-12)) alphaINew = Ci;
+
+        //更新alpha
+        alphas[j] = alphaJNew;
+        alphas[i] = alphaINew;
+
+        double deltaI = alphaINew - alphaIOld;
+        double deltaJ = alphaJNew - alphaJOld;
 
-            //此时完成了alpha-pairs以及b的更新
-            return 1;
+        //double b1 = b - (Ei + deltaI * labelI * K.get(i, i) + deltaJ * labelJ * K.get(j, i))
+        double b1 = b - Ei - deltaI * labelI * K.get(i, i) - deltaJ * labelJ * K.get(i, j);
+        double b2 = b - Ej - deltaI * labelI * K.get(i, j) - deltaJ * labelJ * K.get(j, j);
+
+        double bOld = b;
+        //优化后的b由不在边界上的算子决定
+        if (alphaINew > 0 && alphaINew < Ci) {
+            b = b1;
+        } else if (alphaJNew > 0 && alphaJNew < Cj) {
+            b = b2;
         } else {
-            //满足KKT条件
-            return 0;
+            b = (b1 + b2) / 2.0;
         }
+
+        //更新偏差及缓存Ek
+        updateErrors(i, deltaI, j, deltaJ, b - bOld);
+        updateECache(j);
+        updateECache(i);
+
+        //此时完成了alpha-pairs以及b的更新
+        return 1;
     }
 
     /**
-     * platt Smo 算法
+     * SMO算法
+     * 设置了kktTolerance时按最大违反对选择算子对，否则使用platt的启发式选择
      */
     protected void smo(int maxIteration) {
+        long smoStart = System.nanoTime();
+        //时间限制包括之前计算K的时间，没有经过calcKernelMatrix时从SMO开始计算
+        long start = budgetStarted ? budgetStart : smoStart;
+        budgetStarted = false;
+        long deadline = timeBudgetNanos > 0 ? start + timeBudgetNanos : Long.MAX_VALUE;
+        initErrors();
+        if (kktTolerance > 0) {
+            minAlphaStep = 0;
+            smoMaxViolatingPair(maxIteration, deadline);
+        } else {
+            minAlphaStep = 0.00001;
+            smoPlatt(maxIteration, deadline);
+        }
+        firePhase(TrainingPhase.SMO, smoStart);
+    }
+
+    /**
+     * platt Smo 算法
+     */
+    private void smoPlatt(int maxIteration, long deadline) {
         boolean entireSet = true;
         int alphaPairsChanged = 0;
+        stopReason = StopReason.NO_CHANGE;
 
         int iter = 0;
         while (entireSet || alphaPairsChanged > 0) {
+            long passStart = System.nanoTime();
+            boolean passEntireSet = entireSet;
             alphaPairsChanged = 0;
-            if (entireSet) {
-                //全集合遍历优化
-                for (int i = 0; i < sampleCount; i++) {
-                    alphaPairsChanged += optAlphaPairs(i);
+            for (int i = 0; i < sampleCount; i++) {
+                if (System.nanoTime() > deadline) {
+                    stopReason = StopReason.TIME_BUDGET;
+                    break;
                 }
-            } else {
-                //边界内算子优化
-                for (int i = 0; i < sampleCount; i++) {
-                    double alpha = alphas.get(i, 0);
+                if (entireSet) {
+                    //全集合遍历优化
+                    alphaPairsChanged += optAlphaPairs(i);
+                } else {
+                    //边界内算子优化
+                    double alpha = alphas[i];
                     if (alpha > 0 && alpha < calcBoundC(i)) {
                         //边界算子
                         alphaPairsChanged += optAlphaPairs(i);
@@ -326,68 +1195,316 @@ public abstract class SupportVectorMachine {
 
             //终止条件： 如果此次优化为全集合优化，且在优化中没有alpha算子更新，则SMO算法终止
             iter++;
-            if (iter >= maxIteration) break;
+            firePass(iter, passEntireSet, alphaPairsChanged, passStart);
+            if (stopReason == StopReason.TIME_BUDGET) break;
+            if (dualityGap > 0 && calcDualityGap() <= dualityGap) {
+                stopReason = StopReason.DUALITY_GAP;
+                break;
+            }
+            if (iter >= maxIteration) {
+                stopReason = StopReason.MAX_ITERATION;
+                break;
+            }
         }
 
-        System.out.println("训练结束，迭代次数：" + iter);
+        System.out.println("训练结束，迭代次数：" + iter + "，" + stopReason);
     }
 
     /**
-     * 计算SV
+     * 每次选择违反KKT条件最严重的一对算子，O(m)
+     * 违反程度与b无关，结束后由边界内的算子重新计算b
      */
-    protected void calcSV() {
-        svCount = 0;
-        for (int i = 0; i < sampleCount; i++) {
-            if (alphas.get(i, 0) > 0) {
-                svCount++;
+    private void smoMaxViolatingPair(int maxIteration, long deadline) {
+        int iter = 0;
+        int steps = 0;
+        int alphaPairsChanged = 0;
+        long passStart = System.nanoTime();
+        while (true) {
+            if (System.nanoTime() > deadline) {
+                stopReason = StopReason.TIME_BUDGET;
+                break;
+            }
+            int[] pair = new int[2];
+            if (selectMaxViolatingPair(pair) <= kktTolerance) {
+                stopReason = StopReason.KKT_TOLERANCE;
+                break;
+            }
+            if (takeStep(pair[0], pair[1]) == 0) {
+                stopReason = StopReason.NO_PROGRESS;
+                break;
+            }
+            alphaPairsChanged++;
+            if (++steps == sampleCount) {
+                iter++;
+                firePass(iter, true, alphaPairsChanged, passStart);
+                steps = 0;
+                alphaPairsChanged = 0;
+                passStart = System.nanoTime();
+                if (dualityGap > 0 && calcDualityGap() <= dualityGap) {
+                    stopReason = StopReason.DUALITY_GAP;
+                    break;
+                }
+                if (iter >= maxIteration) {
+                    stopReason = StopReason.MAX_ITERATION;
+                    break;
+                }
+            }
+        }
+        resetBias();
+        if (steps > 0) firePass(++iter, true, alphaPairsChanged, passStart);
+
+        System.out.println("训练结束，迭代次数：" + iter + "，" + stopReason);
+    }
+
+    /**
+     * I_up = {alpha < C, y = 1} + {alpha > 0, y = -1}
+     * I_low = {alpha < C, y = -1} + {alpha > 0, y = 1}
+     * 最优时 max(Ek, k属于I_low) <= min(Ek, k属于I_up)
+     *
+     * @param pair 输出违反最严重的一对样本 [I_low, I_up]
+     * @return 最大违反程度，不存在可以优化的一对时为负无穷
+     */
+    private double selectMaxViolatingPair(int[] pair) {
+        Best[] best = parallel()
+                ? IntStream.range(0, chunkCount()).parallel()
+                .mapToObj(c -> selectMaxViolatingPair(c * PARALLEL_CHUNK, Math.min(sampleCount, (c + 1) * PARALLEL_CHUNK)))
+                .reduce((a, b) -> new Best[]{a[0].merge(b[0]), a[1].merge(b[1])}).get()
+                : selectMaxViolatingPair(0, sampleCount);
+        if (best[0].idx < 0 || best[1].idx < 0) return Double.NEGATIVE_INFINITY;
+        pair[0] = best[0].idx;
+        pair[1] = best[1].idx;
+        //best[1]中为 -min(Ek, k属于I_up)
+        return best[0].value + best[1].value;
+    }
+
+    /**
+     * @return [max(Ek, k属于I_low), -min(Ek, k属于I_up)]
+     */
+    private Best[] selectMaxViolatingPair(int from, int to) {
+        double maxLow = Double.NEGATIVE_INFINITY;
+        double minUp = Double.POSITIVE_INFINITY;
+        int low = -1, up = -1;
+        for (int k = from; k < to; k++) {
+            double alpha = alphas[k];
+            boolean positive = labels[k] == 1;
+            boolean belowC = alpha < calcBoundC(k);
+            boolean aboveZero = alpha > 0;
+            if ((positive && belowC) || (!positive && aboveZero)) {
+                if (E[k] < minUp) {
+                    minUp = E[k];
+                    up = k;
+                }
+            }
+            if ((positive && aboveZero) || (!positive && belowC)) {
+                if (E[k] > maxLow) {
+                    maxLow = E[k];
+                    low = k;
+                }
+            }
+        }
+        return new Best[]{new Best(maxLow, low), new Best(-minUp, up)};
+    }
+
+    /**
+     * @return 所有样本违反KKT条件的最大程度 max(Ek, k属于I_low) - min(Ek, k属于I_up)，不小于0
+     */
+    protected double calcMaxViolation() {
+        return Math.max(0, selectMaxViolatingPair(new int[2]));
+    }
+
+    /**
+     * @return 使边界内的样本满足 Ek = 0 的b的修正量，没有边界内的样本时取可行区间的中点
+     */
+    private double calcBiasShift() {
+        double sum = 0;
+        int free = 0;
+        for (int k = 0; k < sampleCount; k++) {
+            double alpha = alphas[k];
+            if (alpha > 0 && alpha < calcBoundC(k)) {
+                sum += E[k];
+                free++;
+            }
+        }
+        if (free > 0) return -sum / free;
+        int[] pair = new int[2];
+        if (selectMaxViolatingPair(pair) == Double.NEGATIVE_INFINITY) return 0;
+        return -(E[pair[0]] + E[pair[1]]) / 2;
+    }
+
+    /**
+     * 由边界内的算子重新计算b，同时修正所有样本的偏差
+     */
+    private void resetBias() {
+        shiftBias(calcBiasShift());
+    }
+
+    /**
+     * b加上delta，同时修正所有样本的偏差，保持 Ei = f(xi) + b - yi
+     * SMO之后修改b(例如边界修正)也需要通过该方法，否则calcFxi和getTrainingDecisionValues与模型不一致
+     *
+     * @param delta b的变化量
+     */
+    protected void shiftBias(double delta) {
+        b += delta;
+        for (int k = 0; k < sampleCount; k++) {
+            E[k] += delta;
+        }
+    }
+
+    /**
+     * 相对对偶间隙 (P - D) / P
+     * P = 1/2*||w||^2 + sum(Ci*xii), D = sum(alphai) - 1/2*||w||^2
+     * 其中 ||w||^2 = sum(alphai*yi*f(xi))，xii = max(0, 1 - yi*(f(xi) + b))，b取resetBias之后的值，O(m)
+     *
+     * @return 相对对偶间隙
+     */
+    protected double calcDualityGap() {
+        double delta = calcBiasShift();
+        double w2 = 0, sumAlpha = 0, loss = 0;
+        for (int k = 0; k < sampleCount; k++) {
+            double alpha = alphas[k];
+            double y = labels[k];
+            if (alpha > 0) {
+                sumAlpha += alpha;
+                w2 += alpha * y * calcFxi(k);
             }
+            double xi = -y * (E[k] + delta);
+            if (xi > 0) loss += calcBoundC(k) * xi;
         }
+        double primal = w2 / 2 + loss;
+        double dual = sumAlpha - w2 / 2;
+        return primal <= 0 ? 0 : (primal - dual) / primal;
+    }
 
-        svMat = new Matrix(svCount, featureCount);
-        svLabelsMat = new Matrix(svCount, 1);
-        svAlphasMat = new Matrix(svCount, 1);
+    /**
+     * 训练样本的决策值，由偏差得到 f(xi) = Ei + yi - b，不需要计算核函数
+     * 与K一致，K为低秩近似时是近似值
+     * 不含b，shiftBias同时修改b和偏差，所以修正b之前和之后的结果相同
+     *
+     * @param i 样本序号
+     * @return f(xi)，不含b
+     */
+    protected double calcFxi(int i) {
+        return E[i] + labels[i] - b;
+    }
 
-        int svSampleCount = 0;
+    /**
+     * 最近一次训练结束时每个训练样本的决策值，b为修正之后的值，即与getModel().decisionValue(xi)相同
+     * (K为低秩近似时是近似值)
+     *
+     * @return 每个训练样本的 f(xi) + b - m
+     */
+    public double[] getTrainingDecisionValues() {
+        if (E == null || E.length != sampleCount) throw new IllegalStateException("需要在train之后调用");
+        double[] res = new double[sampleCount];
         for (int i = 0; i < sampleCount; i++) {
-            double C = calcBoundC(i);
-            double alphaI = alphas.get(i, 0);
-            if (alphaI > 0) {
+            res[i] = E[i] + labels[i];
+        }
+        return res;
+    }
+
+    /**
+     * 计算SV，一次遍历
+     */
+    protected void calcSV() {
+        long start = System.nanoTime();
+        int[] idx = new int[sampleCount];
+        svCount = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            if (alphas[i] > 0) {
                 //此时为支持向量
-                svMat.setMatrix(svSampleCount, svSampleCount, 0, featureCount - 1,
-                        data.getMatrix(i, i, 0, featureCount - 1));
-                svLabelsMat.set(svSampleCount, 0, labels.get(i, 0));
-                svAlphasMat.set(svSampleCount, 0, alphas.get(i, 0));
-                svSampleCount++;
+                idx[svCount++] = i;
             }
         }
+
+        svIdx = Arrays.copyOf(idx, svCount);
+        svLabels = new double[svCount];
+        svAlphas = new double[svCount];
+        //p
+        wSv = new double[svCount];
+        for (int t = 0; t < svCount; t++) {
+            svLabels[t] = labels[svIdx[t]];
+            svAlphas[t] = alphas[svIdx[t]];
+            wSv[t] = svLabels[t] * svAlphas[t];
+        }
+
+        if (sparseData == null) {
+            svMat = data.selectRows(svIdx);
+        } else {
+            svSparseMat = sparseData.selectRows(svIdx);
+        }
+        firePhase(TrainingPhase.CALC_SV, start);
     }
 
     /**
-     * 计算w
+     * 计算w，需要在calcSV之后调用
+     * 非支持向量的算子为0，只需要累加支持向量
      */
     protected void calcW() {
-        for (int i = 0; i < sampleCount; i++) {
-            // 1*m -> m*1
-            Matrix wi = data.getMatrix(i, i, 0, featureCount - 1).times(
-                    alphas.get(i, 0) * labels.get(i, 0)).transpose();
+        long start = System.nanoTime();
+        //重新训练时从0开始累加
+        double[] wArr = new double[featureCount];
+        if (sparseData != null) {
+            for (int t = 0; t < svCount; t++) {
+                svSparseMat.addRowTo(t, wSv[t], wArr);
+            }
+        } else {
+            //w = Sv' * (alpha .* y)，按行累加
+            svMat.gemvT(1, wSv, 0, wArr);
+        }
+        w = new Matrix(wArr, featureCount);
+        firePhase(TrainingPhase.CALC_W, start);
+    }
 
-            w.plusEquals(wi);
+    /**
+     * 由当前的支持向量、b以及核函数参数生成不可修改的模型
+     * 模型不引用训练样本和矩阵K
+     *
+     * @return 模型
+     */
+    protected SvmModel buildModel() {
+        double[] coef = wSv.clone();
+        if (svSparseMat != null) {
+            model = new SvmModel(currentKernel(), b, coef, svSparseMat, scaler);
+        } else {
+            model = new SvmModel(currentKernel(), b, coef,
+                    DoubleBuffer.wrap(svMat.getData().clone()), featureCount, scaler);
         }
+        return model;
     }
 
     /**
      * 训练
      *
      * @param param 所需要的参数
+     * @return 训练得到的模型
      */
-    public abstract void train(int maxIteration, double... param);
+    public abstract SvmModel train(int maxIteration, double... param);
+
+    /**
+     * @return 最近一次训练得到的模型
+     */
+    public SvmModel getModel() {
+        if (model == null) throw new IllegalStateException("模型尚未训练");
+        return model;
+    }
+
+    /**
+     * @return 支持向量在训练样本中的序号 - p，与模型中支持向量的顺序一致
+     */
+    public int[] getSvIndices() {
+        if (svIdx == null) throw new IllegalStateException("模型尚未训练");
+        return svIdx.clone();
+    }
 
 
     /**
      * @return TP TN FP FN ---> Map
      */
     public HashMap<String, Integer> evaluateSelf() {
-        return this.evaluate(data, labels);
+        //训练样本已经归一化
+        if (sparseData != null) return evaluate(sampleCount, i -> sign(calcFx(sparseData.row(i)) + b), labels);
+        return evaluate(sampleCount, i -> sign(calcFx(data.getData(), data.rowOffset(i)) + b), labels);
     }
 
     /**
@@ -398,12 +1515,70 @@ public abstract class SupportVectorMachine {
      * @return TP TN FP FN
      */
     public HashMap<String, Integer> evaluate(Matrix x, Matrix y) {
+        return countMap(evaluateReport(x, y));
+    }
+
+    /**
+     * 评估稀疏样本
+     *
+     * @param x 输入
+     * @param y 标签
+     * @return TP TN FP FN
+     */
+    public HashMap<String, Integer> evaluate(SparseMatrix x, Matrix y) {
+        return countMap(evaluateReport(x, y));
+    }
+
+    /**
+     * 并行评估，同时计算ROC-AUC和PR-AUC
+     *
+     * @param x 输入
+     * @param y 标签
+     * @return 评估结果
+     */
+    public EvaluationReport evaluateReport(Matrix x, Matrix y) {
+        EvaluationReport report = ModelEvaluator.evaluate(getModel(), x, y);
+        updateRate(report);
+        return report;
+    }
+
+    /**
+     * 并行评估稀疏样本，同时计算ROC-AUC和PR-AUC
+     *
+     * @param x 输入
+     * @param y 标签
+     * @return 评估结果
+     */
+    public EvaluationReport evaluateReport(SparseMatrix x, Matrix y) {
+        EvaluationReport report = ModelEvaluator.evaluate(getModel(), x, y);
+        updateRate(report);
+        return report;
+    }
+
+    /**
+     * evaluate返回int的计数，样本个数不超过int，转换不会溢出
+     */
+    private static HashMap<String, Integer> countMap(EvaluationReport report) {
         HashMap<String, Integer> map = new HashMap<>();
+        map.put("TP", Math.toIntExact(report.getTP()));
+        map.put("TN", Math.toIntExact(report.getTN()));
+        map.put("FP", Math.toIntExact(report.getFP()));
+        map.put("FN", Math.toIntExact(report.getFN()));
+        return map;
+    }
 
-        //样本个数
-        int m = x.getRowDimension();
-        //特征个数
-        int n = x.getColumnDimension();
+    private void updateRate(EvaluationReport report) {
+        rate = (report.getTP() + report.getFN() + 1.0) / (report.getTN() + report.getFP() + 1);
+    }
+
+    /**
+     * @param m         样本个数
+     * @param predictor 第i个样本的预测标签
+     * @param y         标签
+     * @return TP TN FP FN
+     */
+    private HashMap<String, Integer> evaluate(int m, IntUnaryOperator predictor, double[] y) {
+        HashMap<String, Integer> map = new HashMap<>();
 
         int positive_count = 0;
         int negative_count = 0;
@@ -412,14 +1587,14 @@ public abstract class SupportVectorMachine {
         int error_negative = 0;
 
         for (int i = 0; i < m; i++) {
-            double labelI = y.get(i, 0);
+            double labelI = y[i];
             if (labelI == 1) {
                 positive_count++;
             } else {
                 negative_count++;
             }
 
-            int res = this.predict(x.getMatrix(i, i, 0, n - 1));
+            int res = predictor.applyAsInt(i);
 
             if (res != labelI) {
                 if (labelI == 1) {
@@ -430,7 +1605,7 @@ public abstract class SupportVectorMachine {
             }
         }
 
-        rate = (positive_count + 1) / (negative_count + 1);
+        rate = (positive_count + 1.0) / (negative_count + 1);
 
         map.put("TP", (positive_count - error_positive));
         map.put("TN", (negative_count - error_negative));
@@ -440,11 +1615,66 @@ public abstract class SupportVectorMachine {
         return map;
     }
 
+    /**
+     * 计算决策函数中与b无关的部分
+     * f(x) = sum(alphai*yi*K(xi, x))
+     *
+     * @param x 样本 1*n
+     * @return f(x)
+     */
+    protected double calcFx(Matrix x) {
+        if (svSparseMat != null) return calcFx(SparseMatrix.fromDense(x));
+        return calcFx(x.getRowPackedCopy(), 0);
+    }
+
+    /**
+     * @param x   按行连续存放的样本
+     * @param off 样本在x中的偏移
+     * @return f(x)
+     */
+    protected double calcFx(double[] x, int off) {
+        Kernel kernel = currentKernel();
+        double[] sv = svMat.getData();
+        double fx = 0;
+        for (int t = 0; t < svCount; t++) {
+            fx += wSv[t] * kernel.apply(sv, svMat.rowOffset(t), x, off, featureCount);
+        }
+        return fx;
+    }
+
+    /**
+     * @param x 稀疏样本 1*n
+     * @return f(x)
+     */
+    protected double calcFx(SparseMatrix x) {
+        if (svSparseMat == null) return calcFx(x.toDense());
+        double[] X = new double[svCount];//p
+        currentKernel().rows(svSparseMat, 0, svCount, x, 0, X);
+        return DenseMatrix.dot(X, 0, wSv, 0, svCount);
+    }
+
     /**
      * 预测某个样本
      *
      * @param x 样本
      * @return 标签
      */
-    public abstract int predict(Matrix x);
+    public int predict(Matrix x) {
+        return getModel().predict(x);
+    }
+
+    /**
+     * 预测某个稀疏样本
+     *
+     * @param x 样本 1*n
+     * @return 标签
+     */
+    public int predict(SparseMatrix x) {
+        return getModel().predict(x);
+    }
+
+    private static int sign(double res) {
+        if (res > 0) return 1;
+        else return -1;
+    }
 }
@@ -0,0 +1,318 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * 支持向量约简
+ * 保留|alpha*y|最大的r个支持向量Z，再求解 K_ZZ * beta = K_ZS * coef 得到新的系数，
+ * 即把原决策函数在核空间中投影到Z张成的子空间上，最后用最小二乘重新确定b
+ * <p>
+ * 投影误差 e = ||sum(coef*phi(s)) - sum(beta*phi(z))|| 给出了决策函数变化的上界
+ * |f(x) - g(x)| <= e * sqrt(k(x, x))，RBF核的k(x, x) = 1，b的调整量另计
+ */
+public class SvReducer {
+    //求解K_ZZ时加在对角线上的正则项，避免相近的支持向量导致矩阵奇异
+    private static final double RIDGE = 1e-8;
+
+    /**
+     * @param model         稠密模型
+     * @param targetSvCount 保留的支持向量个数
+     * @return 约简后的模型
+     */
+    public static SvmModel reduce(SvmModel model, int targetSvCount) {
+        return new Reduction(model).reduce(targetSvCount, 0);
+    }
+
+    /**
+     * 在投影误差不超过tolerance的前提下保留尽量少的支持向量
+     *
+     * @param model     稠密模型
+     * @param tolerance 投影误差上限
+     * @return 约简后的模型
+     */
+    public static SvmModel reduceWithin(SvmModel model, double tolerance) {
+        return new Reduction(model).reduce(model.getSvCount(), tolerance);
+    }
+
+    /**
+     * @param model 稠密模型
+     * @param r     保留的支持向量个数
+     * @return 投影误差
+     */
+    public static double projectionError(SvmModel model, int r) {
+        Reduction reduction = new Reduction(model);
+        reduction.reduce(r, 0);
+        return reduction.lastError;
+    }
+
+    /**
+     * 对比约简前后的模型在同一样本集上的效果和耗时
+     *
+     * @param before 原模型
+     * @param after  约简后的模型
+     * @param x      样本 m*n
+     * @param y      标签 m*1
+     * @return 报告
+     */
+    public static Report compare(SvmModel before, SvmModel after, Matrix x, Matrix y) {
+        int m = x.getRowDimension();
+        double[][] arr = x.getArray();
+
+        int[][] confusion = new int[2][4];
+        SvmModel[] models = {before, after};
+        long[] nanos = new long[2];
+        int agree = 0;
+        double maxChange = 0;
+        double[] fBefore = new double[m];
+
+        for (int k = 0; k < 2; k++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < m; i++) {
+                double f = models[k].decisionValue(arr[i]);
+                if (k == 0) {
+                    fBefore[i] = f;
+                } else {
+                    maxChange = Math.max(maxChange, Math.abs(f - fBefore[i]));
+                    if ((f > 0) == (fBefore[i] > 0)) agree++;
+                }
+                boolean positive = y.get(i, 0) == 1;
+                boolean predicted = f > 0;
+                //TP TN FP FN
+                if (positive && predicted) confusion[k][0]++;
+                else if (!positive && !predicted) confusion[k][1]++;
+                else if (predicted) confusion[k][2]++;
+                else confusion[k][3]++;
+            }
+            nanos[k] = System.nanoTime() - start;
+        }
+
+        return new Report(before.getSvCount(), after.getSvCount(), f1(confusion[0]), f1(confusion[1]),
+                m == 0 ? 1 : agree * 1.0 / m, maxChange,
+                m == 0 ? 0 : nanos[0] * 1.0 / m, m == 0 ? 0 : nanos[1] * 1.0 / m);
+    }
+
+    private static double f1(int[] c) {
+        double P = c[0] * 1.0 / (c[0] + c[2]);
+        double R = c[0] * 1.0 / (c[0] + c[3]);
+        return 2 * P * R / (P + R);
+    }
+
+    /**
+     * 一次约简过程中可以复用的数据
+     */
+    private static class Reduction {
+        private final SvmModel model;
+        private final int p;
+        private final int n;
+        //支持向量 p*n 按行连续存放
+        private final double[] sv;
+        private final double[] coef;
+        //支持向量之间的核函数 p*p
+        private final double[][] K;
+        //原决策函数在支持向量上的值(不含b)
+        private final double[] f;
+        //coef' * K * coef
+        private final double norm2;
+        //最近一次约简的投影误差
+        private double lastError;
+
+        private Reduction(SvmModel model) {
+            if (model.isSparse()) throw new IllegalArgumentException("稀疏模型不支持约简");
+            this.model = model;
+            this.p = model.getSvCount();
+            this.n = model.getFeatureCount();
+            this.coef = model.getCoefficients();
+            this.sv = new double[p * n];
+            model.getSupportVectors().get(sv);
+
+            Kernel kernel = model.getKernel();
+            this.K = new double[p][p];
+            for (int i = 0; i < p; i++) {
+                for (int j = i; j < p; j++) {
+                    K[i][j] = K[j][i] = kernel.apply(sv, i * n, sv, j * n, n);
+                }
+            }
+
+            this.f = new double[p];
+            double s = 0;
+            for (int i = 0; i < p; i++) {
+                for (int k = 0; k < p; k++) {
+                    f[i] += K[i][k] * coef[k];
+                }
+                s += coef[i] * f[i];
+            }
+            this.norm2 = s;
+        }
+
+        /**
+         * 贪心选取Z，每次选择使投影误差下降最多的支持向量
+         * 对选中的phi(z)逐个做Gram-Schmidt正交化(即对K做选主元的Cholesky分解)，
+         * L[i][k]为phi(s_i)在第k个正交基上的分量，每一步只需O(p*k)
+         *
+         * @param maxCount  最多保留的个数
+         * @param tolerance 投影误差不超过该值时提前停止
+         */
+        private SvmModel reduce(int maxCount, double tolerance) {
+            maxCount = Math.max(Math.min(maxCount, p), 1);
+            double[][] L = new double[p][maxCount];
+            //phi(s_i)与当前子空间的距离的平方
+            double[] d = new double[p];
+            //Psi - P(Psi)与phi(s_i)的内积
+            double[] res = f.clone();
+            for (int i = 0; i < p; i++) d[i] = K[i][i];
+            boolean[] selected = new boolean[p];
+            int[] keep = new int[maxCount];
+            double err2 = norm2;
+
+            int r = 0;
+            while (r < maxCount && Math.sqrt(Math.max(err2, 0)) > tolerance) {
+                int j = -1;
+                double best = 0;
+                for (int i = 0; i < p; i++) {
+                    if (selected[i] || d[i] <= RIDGE) continue;
+                    double score = res[i] * res[i] / d[i];
+                    if (j < 0 || score > best) {
+                        j = i;
+                        best = score;
+                    }
+                }
+                if (j < 0) break;
+
+                double dj = Math.sqrt(d[j]);
+                double c = res[j] / dj;
+                for (int i = 0; i < p; i++) {
+                    double v = K[i][j];
+                    for (int t = 0; t < r; t++) {
+                        v -= L[i][t] * L[j][t];
+                    }
+                    v /= dj;
+                    L[i][r] = v;
+                    d[i] -= v * v;
+                    res[i] -= c * v;
+                }
+                err2 -= c * c;
+                selected[j] = true;
+                keep[r++] = j;
+            }
+            if (r == p) {
+                lastError = 0;
+                return model;
+            }
+            keep = Arrays.copyOf(keep, r);
+
+            //K_ZZ * beta = K_ZS * coef，其中K_ZS * coef即f在Z上的值
+            Matrix KZZ = new Matrix(r, r);
+            Matrix rhs = new Matrix(r, 1);
+            for (int i = 0; i < r; i++) {
+                for (int j = 0; j < r; j++) {
+                    KZZ.set(i, j, K[keep[i]][keep[j]]);
+                }
+                KZZ.set(i, i, KZZ.get(i, i) + RIDGE);
+                rhs.set(i, 0, f[keep[i]]);
+            }
+            double[] beta = KZZ.solve(rhs).getColumnPackedCopy();
+
+            //||Psi - Psi'||^2 = coef'K coef - 2 beta'(K_ZS coef) + beta'K_ZZ beta
+            double cross = 0;
+            double quad = 0;
+            for (int i = 0; i < r; i++) {
+                cross += beta[i] * f[keep[i]];
+                for (int j = 0; j < r; j++) {
+                    quad += beta[i] * beta[j] * K[keep[i]][keep[j]];
+                }
+            }
+            lastError = Math.sqrt(Math.max(norm2 - 2 * cross + quad, 0));
+
+            //新的b使得在原支持向量上决策函数的变化的平方和最小
+            double shift = 0;
+            for (int i = 0; i < p; i++) {
+                double g = 0;
+                for (int j = 0; j < r; j++) {
+                    g += beta[j] * K[i][keep[j]];
+                }
+                shift += f[i] - g;
+            }
+            shift /= p;
+
+            double[] reducedSv = new double[r * n];
+            for (int i = 0; i < r; i++) {
+                System.arraycopy(sv, keep[i] * n, reducedSv, i * n, n);
+            }
+            return new SvmModel(model.getKernel(), model.getB() + shift, beta,
+                    DoubleBuffer.wrap(reducedSv), n, model.getScaler());
+        }
+    }
+
+    /**
+     * 约简前后的对比
+     */
+    public static class Report {
+        private final int svBefore;
+        private final int svAfter;
+        private final double f1Before;
+        private final double f1After;
+        private final double agreement;
+        private final double maxDecisionChange;
+        private final double nanosPerPredictBefore;
+        private final double nanosPerPredictAfter;
+
+        private Report(int svBefore, int svAfter, double f1Before, double f1After, double agreement,
+                       double maxDecisionChange, double nanosPerPredictBefore, double nanosPerPredictAfter) {
+            this.svBefore = svBefore;
+            this.svAfter = svAfter;
+            this.f1Before = f1Before;
+            this.f1After = f1After;
+            this.agreement = agreement;
+            this.maxDecisionChange = maxDecisionChange;
+            this.nanosPerPredictBefore = nanosPerPredictBefore;
+            this.nanosPerPredictAfter = nanosPerPredictAfter;
+        }
+
+        public int getSvBefore() {
+            return svBefore;
+        }
+
+        public int getSvAfter() {
+            return svAfter;
+        }
+
+        public double getF1Before() {
+            return f1Before;
+        }
+
+        public double getF1After() {
+            return f1After;
+        }
+
+        /**
+         * @return 两个模型预测标签一致的比例
+         */
+        public double getAgreement() {
+            return agreement;
+        }
+
+        public double getMaxDecisionChange() {
+            return maxDecisionChange;
+        }
+
+        public double getNanosPerPredictBefore() {
+            return nanosPerPredictBefore;
+        }
+
+        public double getNanosPerPredictAfter() {
+            return nanosPerPredictAfter;
+        }
+
+        @Override
+        public String toString() {
+            return "支持向量 : " + svBefore + " -> " + svAfter
+                    + " , F1 : " + f1Before + " -> " + f1After
+                    + " , 一致率 : " + agreement
+                    + " , 决策值最大变化 : " + maxDecisionChange
+                    + " , 单次预测(ns) : " + nanosPerPredictBefore + " -> " + nanosPerPredictAfter;
+        }
+    }
+}
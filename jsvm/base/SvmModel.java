@@ -0,0 +1,326 @@
+package jsvm.base;
+
+import Jama.Matrix;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * 训练得到的模型
+ * 只保存支持向量、系数alpha*y、b、核函数以及归一化参数，不引用训练器、训练样本和矩阵K
+ * 创建后不可修改，predict可以在多个线程中同时调用
+ */
+public final class SvmModel {
+    //一次复制到堆内的支持向量的个数和一次计算的样本个数
+    private static final int SV_BLOCK = 256;
+    private static final int QUERY_BLOCK = 64;
+
+    private final Kernel kernel;
+    private final double b;
+
+    //支持向量的个数 - p
+    private final int svCount;
+    //特征的个数 - n
+    private final int featureCount;
+    //alpha*y - p
+    private final double[] coef;
+    //稠密支持向量 - p*n 按行连续存放，只读
+    private final DoubleBuffer svData;
+    //稀疏支持向量 - p*n，与svData只有一个不为空
+    private final SparseMatrix svSparse;
+    //归一化参数，可以为空
+    private final FeatureScaler scaler;
+
+    /**
+     * @param kernelType   核函数类型
+     * @param kernelParam  核函数参数
+     * @param b            b
+     * @param coef         alpha*y - p
+     * @param svData       稠密支持向量 p*n 按行连续存放
+     * @param featureCount 特征的个数 - n
+     * @param scaler       归一化参数，可以为空
+     */
+    public SvmModel(KernelType kernelType, double[] kernelParam, double b, double[] coef,
+                    DoubleBuffer svData, int featureCount, FeatureScaler scaler) {
+        this(Kernel.of(kernelType, kernelParam), b, coef, svData, featureCount, scaler);
+    }
+
+    /**
+     * @param kernel       核函数
+     * @param b            b
+     * @param coef         alpha*y - p
+     * @param svData       稠密支持向量 p*n 按行连续存放
+     * @param featureCount 特征的个数 - n
+     * @param scaler       归一化参数，可以为空
+     */
+    public SvmModel(Kernel kernel, double b, double[] coef, DoubleBuffer svData, int featureCount,
+                    FeatureScaler scaler) {
+        if (svData.remaining() != (long) coef.length * featureCount) {
+            throw new IllegalArgumentException("支持向量维度不一致 : " + svData.remaining()
+                    + " , " + coef.length + "*" + featureCount);
+        }
+        this.kernel = kernel;
+        this.b = b;
+        this.svCount = coef.length;
+        this.featureCount = featureCount;
+        this.coef = coef.clone();
+        this.svData = svData.slice().asReadOnlyBuffer();
+        this.svSparse = null;
+        this.scaler = scaler;
+    }
+
+    /**
+     * @param kernelType  核函数类型
+     * @param kernelParam 核函数参数
+     * @param b           b
+     * @param coef        alpha*y - p
+     * @param svSparse    稀疏支持向量 p*n
+     * @param scaler      归一化参数，可以为空
+     */
+    public SvmModel(KernelType kernelType, double[] kernelParam, double b, double[] coef,
+                    SparseMatrix svSparse, FeatureScaler scaler) {
+        this(Kernel.of(kernelType, kernelParam), b, coef, svSparse, scaler);
+    }
+
+    /**
+     * @param kernel   核函数
+     * @param b        b
+     * @param coef     alpha*y - p
+     * @param svSparse 稀疏支持向量 p*n
+     * @param scaler   归一化参数，可以为空
+     */
+    public SvmModel(Kernel kernel, double b, double[] coef, SparseMatrix svSparse, FeatureScaler scaler) {
+        if (svSparse.getRowDimension() != coef.length) {
+            throw new IllegalArgumentException("支持向量个数不一致 : " + svSparse.getRowDimension() + " , " + coef.length);
+        }
+        this.kernel = kernel;
+        this.b = b;
+        this.svCount = coef.length;
+        this.featureCount = svSparse.getColumnDimension();
+        this.coef = coef.clone();
+        this.svData = null;
+        this.svSparse = svSparse;
+        this.scaler = scaler;
+    }
+
+    /**
+     * @param x 样本 1*n
+     * @return f(x) + b
+     */
+    public double decisionValue(Matrix x) {
+        checkFeatureCount(x.getColumnDimension());
+        return decisionValue(x.getArray()[0]);
+    }
+
+    /**
+     * @param x 样本 长度为n
+     * @return f(x) + b
+     */
+    public double decisionValue(double[] x) {
+        checkFeatureCount(x.length);
+        if (scaler != null) {
+            x = x.clone();
+            scaler.transformRow(x, 0);
+        }
+        return decisionValueNormalized(x, 0);
+    }
+
+    /**
+     * @param x 稀疏样本 1*n
+     * @return f(x) + b
+     */
+    public double decisionValue(SparseMatrix x) {
+        checkFeatureCount(x.getColumnDimension());
+        if (svSparse == null) return decisionValue(x.toDense().getArray()[0]);
+        if (scaler != null) x = scaler.transform(x);
+        return sparseFx(x) + b;
+    }
+
+    /**
+     * 按块计算多个样本，核函数一次计算一块支持向量与一块样本
+     *
+     * @param x 样本 m*n 按行连续存放，x不变
+     * @param m 样本个数
+     * @return f(x) + b - m
+     */
+    public double[] decisionValues(double[] x, int m) {
+        return decisionValues(x, 0, m);
+    }
+
+    /**
+     * @param x      样本 按行连续存放，x不变
+     * @param offset 第一个样本的偏移
+     * @param m      样本个数
+     * @return f(x) + b - m
+     */
+    public double[] decisionValues(double[] x, int offset, int m) {
+        int n = featureCount;
+        if (m < 0) throw new IllegalArgumentException("样本个数不能为负数 : " + m);
+        //用long计算，避免大块时溢出为负数而通过检查
+        if (offset < 0 || x.length < offset + (long) m * n) {
+            throw new IllegalArgumentException("样本数组长度不足 : " + x.length + " , " + offset + "+" + m + "*" + n);
+        }
+        if (scaler != null) {
+            x = Arrays.copyOfRange(x, offset, offset + m * n);
+            offset = 0;
+            scaler.transformInPlace(x, 0, m);
+        }
+
+        double[] res = new double[m];
+        if (svSparse != null) {
+            for (int i = 0; i < m; i++) {
+                res[i] = decisionValueNormalized(x, offset + i * n);
+            }
+            return res;
+        }
+
+        //一块支持向量复制到堆内后，与每一块样本由核函数一次计算一块，每个支持向量只读取一次
+        if (offset != 0 || x.length != m * n) x = Arrays.copyOfRange(x, offset, offset + m * n);
+        DenseMatrix queries = new DenseMatrix(x, m, n);
+        double[] queryNorms = kernel.norms(queries);
+        int svBlock = Math.min(SV_BLOCK, svCount);
+        int queryBlock = Math.min(QUERY_BLOCK, m);
+        DenseMatrix svs = new DenseMatrix(svBlock, n);
+        double[] out = new double[svBlock * queryBlock];
+        DoubleBuffer buf = svData.duplicate();
+        for (int k0 = 0; k0 < svCount; k0 += svBlock) {
+            int k1 = Math.min(svCount, k0 + svBlock);
+            buf.get(svs.getData(), 0, (k1 - k0) * n);
+            double[] svNorms = kernel.norms(svs);
+            for (int i0 = 0; i0 < m; i0 += queryBlock) {
+                int i1 = Math.min(m, i0 + queryBlock);
+                int width = i1 - i0;
+                kernel.block(svs, svNorms, 0, k1 - k0, queries, queryNorms, i0, i1, out);
+                for (int k = k0; k < k1; k++) {
+                    double c = coef[k];
+                    int base = (k - k0) * width - i0;
+                    for (int i = i0; i < i1; i++) {
+                        res[i] += c * out[base + i];
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            res[i] += b;
+        }
+        return res;
+    }
+
+    /**
+     * 输入已经归一化
+     *
+     * @param x      样本
+     * @param offset 样本在数组中的偏移
+     * @return f(x) + b
+     */
+    double decisionValueNormalized(double[] x, int offset) {
+        if (svSparse != null) {
+            double[] row = new double[featureCount];
+            System.arraycopy(x, offset, row, 0, featureCount);
+            return sparseFx(SparseMatrix.fromDense(new Matrix(row, 1))) + b;
+        }
+        return denseFx(x, offset) + b;
+    }
+
+    /**
+     * f(x) = sum(alphai*yi*K(xi, x))
+     */
+    private double denseFx(double[] x, int offset) {
+        int n = featureCount;
+        double[] sv = new double[n];
+        DoubleBuffer buf = svData.duplicate();
+        double s = 0;
+        for (int k = 0; k < svCount; k++) {
+            buf.get(sv);
+            s += coef[k] * kernel.apply(sv, 0, x, offset, n);
+        }
+        return s;
+    }
+
+    private double sparseFx(SparseMatrix x) {
+        double[] k = new double[svCount];
+        kernel.rows(svSparse, 0, svCount, x, 0, k);
+        return DenseMatrix.dot(k, 0, coef, 0, svCount);
+    }
+
+    /**
+     * @param x 样本 1*n
+     * @return 标签
+     */
+    public int predict(Matrix x) {
+        return decisionValue(x) > 0 ? 1 : -1;
+    }
+
+    /**
+     * @param x 样本 长度为n
+     * @return 标签
+     */
+    public int predict(double[] x) {
+        return decisionValue(x) > 0 ? 1 : -1;
+    }
+
+    /**
+     * @param x 稀疏样本 1*n
+     * @return 标签
+     */
+    public int predict(SparseMatrix x) {
+        return decisionValue(x) > 0 ? 1 : -1;
+    }
+
+    private void checkFeatureCount(int n) {
+        if (n != featureCount) throw new IllegalArgumentException("特征个数不一致 : " + featureCount + " , " + n);
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    public KernelType getKernelType() {
+        return kernel.type();
+    }
+
+    public double[] getKernelParam() {
+        return kernel.param();
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    public int getSvCount() {
+        return svCount;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * @return alpha*y - p
+     */
+    public double[] getCoefficients() {
+        return coef.clone();
+    }
+
+    /**
+     * @return 稠密支持向量的只读视图 p*n，稀疏模型为空
+     */
+    public DoubleBuffer getSupportVectors() {
+        return svData == null ? null : svData.duplicate();
+    }
+
+    /**
+     * @return 稀疏支持向量 p*n，稠密模型为空
+     */
+    public SparseMatrix getSparseSupportVectors() {
+        return svSparse;
+    }
+
+    public boolean isSparse() {
+        return svSparse != null;
+    }
+
+    public FeatureScaler getScaler() {
+        return scaler;
+    }
+}
@@ -0,0 +1,201 @@
+package jsvm.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 模型的二进制格式
+ * <p>
+ * 文件格式(小端)：
+ * -头部 56字节 : magic(int) version(int) kernelType(int) flags(int) svCount(int) featureCount(int)
+ * kernelParamCount(int) scalerType(int) b(double) svOffset(long) nnz(long)
+ * -核函数参数 : kernelParamCount个double
+ * -系数alpha*y : svCount个double
+ * -归一化参数 : featureCount个mul, featureCount个add (flags & FLAG_SCALER)
+ * -支持向量(从svOffset开始，8字节对齐) :
+ * 稠密 svCount*featureCount个double，按行连续存放
+ * 稀疏 svCount+1个行指针(int), nnz个列序号(int), 对齐后nnz个double
+ * <p>
+ * 加载时文件只读内存映射，稠密支持向量直接使用映射的页，不复制也不解析，
+ * 多个进程加载同一个文件时共享这些页
+ */
+public class SvmModelFile {
+    private static final int MAGIC = 0x4A53564D;//JSVM
+    private static final int VERSION = 1;
+    private static final int FLAG_SPARSE = 1;
+    private static final int FLAG_SCALER = 2;
+    private static final int HEADER_SIZE = 56;
+
+    /**
+     * @param model    模型
+     * @param filePath path
+     * @throws IOException 写入失败
+     */
+    public static void save(SvmModel model, String filePath) throws IOException {
+        int p = model.getSvCount();
+        int n = model.getFeatureCount();
+        double[] kernelParam = model.getKernelParam();
+        double[] coef = model.getCoefficients();
+        FeatureScaler scaler = model.getScaler();
+        SparseMatrix svSparse = model.getSparseSupportVectors();
+
+        int flags = (svSparse != null ? FLAG_SPARSE : 0) | (scaler != null ? FLAG_SCALER : 0);
+        long nnz = svSparse != null ? svSparse.getNonZeroCount() : 0;
+        long svOffset = HEADER_SIZE + 8L * (kernelParam.length + p + (scaler != null ? 2L * n : 0));
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(model.getKernelType().ordinal());
+            out.putInt(flags);
+            out.putInt(p);
+            out.putInt(n);
+            out.putInt(kernelParam.length);
+            out.putInt(scaler != null ? scaler.getType().ordinal() : -1);
+            out.putDouble(model.getB());
+            out.putLong(svOffset);
+            out.putLong(nnz);
+
+            out.putDoubles(kernelParam);
+            out.putDoubles(coef);
+            if (scaler != null) {
+                out.putDoubles(scaler.getMul());
+                out.putDoubles(scaler.getAdd());
+            }
+
+            if (svSparse == null) {
+                DoubleBuffer sv = model.getSupportVectors();
+                while (sv.hasRemaining()) out.putDouble(sv.get());
+            } else {
+                for (int v : svSparse.getRowPointers()) out.putInt(v);
+                for (int v : svSparse.getColumnIndices()) out.putInt(v);
+                if ((p + 1 + nnz) % 2 != 0) out.putInt(0);
+                out.putDoubles(svSparse.getValues());
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * 内存映射加载模型
+     *
+     * @param filePath path
+     * @return 模型
+     * @throws IOException 文件读取失败或格式不正确
+     */
+    public static SvmModel load(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new IOException("文件头不完整 : " + filePath);
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) throw new IOException("不是模型文件 : " + filePath);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("不支持的版本 : " + version);
+            int kernelIdx = header.getInt();
+            if (kernelIdx < 0 || kernelIdx >= KernelType.values().length) {
+                throw new IOException("未知的核函数 : " + kernelIdx);
+            }
+            KernelType kernelType = KernelType.values()[kernelIdx];
+            int flags = header.getInt();
+            int p = header.getInt();
+            int n = header.getInt();
+            int kernelParamCount = header.getInt();
+            int scalerIdx = header.getInt();
+            double b = header.getDouble();
+            long svOffset = header.getLong();
+            long nnz = header.getLong();
+
+            boolean sparse = (flags & FLAG_SPARSE) != 0;
+            boolean hasScaler = (flags & FLAG_SCALER) != 0;
+            long svSize = sparse ? 4L * (p + 1 + nnz) + 4L * ((p + 1 + nnz) % 2) + 8L * nnz : 8L * p * n;
+            if (svOffset + svSize != size) throw new IOException("文件长度与头部不一致 : " + filePath);
+            if (svSize > Integer.MAX_VALUE) throw new IOException("支持向量超过2G，无法映射 : " + filePath);
+
+            //参数部分较小，复制到数组
+            DoubleBuffer params = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, svOffset - HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            double[] kernelParam = new double[kernelParamCount];
+            params.get(kernelParam);
+            double[] coef = new double[p];
+            params.get(coef);
+            FeatureScaler scaler = null;
+            if (hasScaler) {
+                if (scalerIdx < 0 || scalerIdx >= FeatureScaler.Type.values().length) {
+                    throw new IOException("未知的归一化方式 : " + scalerIdx);
+                }
+                double[] mul = new double[n];
+                double[] add = new double[n];
+                params.get(mul);
+                params.get(add);
+                scaler = new FeatureScaler(FeatureScaler.Type.values()[scalerIdx], mul, add);
+            }
+
+            MappedByteBuffer svRegion = channel.map(FileChannel.MapMode.READ_ONLY, svOffset, svSize);
+            svRegion.order(ByteOrder.LITTLE_ENDIAN);
+            if (!sparse) {
+                return new SvmModel(kernelType, kernelParam, b, coef, svRegion.asDoubleBuffer(), n, scaler);
+            }
+
+            //稀疏支持向量需要复制到数组
+            int[] rowPtr = new int[p + 1];
+            int[] colIdx = new int[(int) nnz];
+            double[] values = new double[(int) nnz];
+            svRegion.asIntBuffer().get(rowPtr).get(colIdx);
+            svRegion.position((int) (svSize - 8L * nnz));
+            svRegion.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+            SparseMatrix svSparse = new SparseMatrix(p, n, rowPtr, colIdx, values);
+            return new SvmModel(kernelType, kernelParam, b, coef, svSparse, scaler);
+        }
+    }
+
+    /**
+     * 带缓冲的小端写入
+     */
+    private static class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        private void putInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        private void putLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        private void putDouble(double v) throws IOException {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        private void putDoubles(double[] values) throws IOException {
+            for (double v : values) putDouble(v);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package jsvm.base;
+
+/**
+ * 训练过程的回调，在训练线程中调用，实现需要尽快返回
+ * 同一个监听器被多个训练器共享时需要自己保证线程安全
+ */
+public interface TrainingListener {
+    /**
+     * SMO的一轮外层循环结束
+     *
+     * @param svm  训练器
+     * @param pass 本轮的状态
+     */
+    default void onPass(SupportVectorMachine svm, TrainingPass pass) {
+    }
+
+    /**
+     * 一个阶段结束
+     *
+     * @param svm   训练器
+     * @param phase 阶段
+     * @param nanos 耗时
+     */
+    default void onPhase(SupportVectorMachine svm, TrainingPhase phase, long nanos) {
+    }
+
+    /**
+     * 计算K之前选定了存放方式，按计划分配失败改用其他方式时再次调用
+     *
+     * @param svm  训练器
+     * @param plan 计划，回退时getFallbackReason不为空
+     */
+    default void onKernelPlan(SupportVectorMachine svm, KernelPlan plan) {
+    }
+}
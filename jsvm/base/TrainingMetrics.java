@@ -0,0 +1,178 @@
+package jsvm.base;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 汇总训练过程的监听器，同时作为MBean注册到JMX，可以用jconsole等工具在运行中查看
+ * 最近一轮的状态取最后结束的一轮，各阶段耗时为累计值，可以被多个训练器共享
+ */
+public class TrainingMetrics implements TrainingListener, TrainingMetricsMBean {
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[TrainingPhase.values().length];
+    private volatile TrainingPass last;
+    private volatile KernelPlan lastPlan;
+    private final LongAdder planFallbacks = new LongAdder();
+    private ObjectName objectName;
+
+    public TrainingMetrics() {
+        for (int i = 0; i < phaseNanos.length; i++) phaseNanos[i] = new LongAdder();
+    }
+
+    /**
+     * 注册到平台MBeanServer，名称为 jsvm:type=Training,name=name
+     *
+     * @param name 训练任务的名称
+     * @return this
+     */
+    public synchronized TrainingMetrics register(String name) {
+        if (objectName != null) throw new IllegalStateException("已经注册 : " + objectName);
+        try {
+            ObjectName on = new ObjectName("jsvm:type=Training,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("名称已经被使用 : " + name, e);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        return this;
+    }
+
+    /**
+     * 从平台MBeanServer注销
+     */
+    public synchronized void unregister() {
+        if (objectName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    @Override
+    public void onPass(SupportVectorMachine svm, TrainingPass pass) {
+        passes.increment();
+        last = pass;
+    }
+
+    @Override
+    public void onPhase(SupportVectorMachine svm, TrainingPhase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void onKernelPlan(SupportVectorMachine svm, KernelPlan plan) {
+        lastPlan = plan;
+        if (plan.getFallbackReason() != null) planFallbacks.increment();
+    }
+
+    public TrainingPass getLast() {
+        return last;
+    }
+
+    @Override
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    @Override
+    public int getLastPass() {
+        TrainingPass p = last;
+        return p == null ? 0 : p.getPass();
+    }
+
+    @Override
+    public int getLastAlphaPairsChanged() {
+        TrainingPass p = last;
+        return p == null ? 0 : p.getAlphaPairsChanged();
+    }
+
+    @Override
+    public double getLastMaxKktViolation() {
+        TrainingPass p = last;
+        return p == null ? Double.NaN : p.getMaxKktViolation();
+    }
+
+    @Override
+    public double getLastObjective() {
+        TrainingPass p = last;
+        return p == null ? Double.NaN : p.getObjective();
+    }
+
+    @Override
+    public double getLastDualityGap() {
+        TrainingPass p = last;
+        return p == null ? Double.NaN : p.getDualityGap();
+    }
+
+    @Override
+    public int getLastSvCount() {
+        TrainingPass p = last;
+        return p == null ? 0 : p.getSvCount();
+    }
+
+    @Override
+    public long getKernelEvaluations() {
+        TrainingPass p = last;
+        return p == null ? 0 : p.getKernelEvaluations();
+    }
+
+    @Override
+    public double getKernelCacheHitRate() {
+        TrainingPass p = last;
+        return p == null ? Double.NaN : p.getKernelCacheHitRate();
+    }
+
+    @Override
+    public double getKernelMatrixMillis() {
+        return millis(TrainingPhase.KERNEL_MATRIX);
+    }
+
+    @Override
+    public double getSmoMillis() {
+        return millis(TrainingPhase.SMO);
+    }
+
+    @Override
+    public double getCalcSvMillis() {
+        return millis(TrainingPhase.CALC_SV);
+    }
+
+    @Override
+    public double getCalcWMillis() {
+        return millis(TrainingPhase.CALC_W);
+    }
+
+    @Override
+    public String getLastKernelPlan() {
+        KernelPlan p = lastPlan;
+        return p == null ? "" : p.toString();
+    }
+
+    @Override
+    public long getKernelPlanFallbacks() {
+        return planFallbacks.sum();
+    }
+
+    @Override
+    public void reset() {
+        passes.reset();
+        for (LongAdder adder : phaseNanos) adder.reset();
+        last = null;
+        lastPlan = null;
+        planFallbacks.reset();
+    }
+
+    private double millis(TrainingPhase phase) {
+        return phaseNanos[phase.ordinal()].sum() / 1e6;
+    }
+}
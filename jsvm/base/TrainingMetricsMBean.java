@@ -0,0 +1,41 @@
+package jsvm.base;
+
+/**
+ * TrainingMetrics的JMX接口
+ */
+public interface TrainingMetricsMBean {
+    //结束的SMO外层循环总数
+    long getPasses();
+
+    int getLastPass();
+
+    int getLastAlphaPairsChanged();
+
+    double getLastMaxKktViolation();
+
+    double getLastObjective();
+
+    double getLastDualityGap();
+
+    int getLastSvCount();
+
+    long getKernelEvaluations();
+
+    double getKernelCacheHitRate();
+
+    double getKernelMatrixMillis();
+
+    double getSmoMillis();
+
+    double getCalcSvMillis();
+
+    double getCalcWMillis();
+
+    //最近一次计算K时的计划
+    String getLastKernelPlan();
+
+    //按计划分配K失败后回退的次数
+    long getKernelPlanFallbacks();
+
+    void reset();
+}
@@ -0,0 +1,87 @@
+package jsvm.base;
+
+/**
+ * SMO的一轮外层循环结束时的状态，不可修改
+ */
+public final class TrainingPass {
+    //第几轮，从1开始
+    private final int pass;
+    //本轮是否遍历全集合
+    private final boolean entireSet;
+    //本轮更新的算子对个数
+    private final int alphaPairsChanged;
+    //违反KKT条件的最大程度 max(Ek, k属于I_low) - min(Ek, k属于I_up)
+    private final double maxKktViolation;
+    //对偶问题的目标函数 sum(alphai) - 1/2 * sum(alphai*alphaj*yi*yj*K(i,j))
+    private final double objective;
+    //相对对偶间隙 (P - D) / P
+    private final double dualityGap;
+    private final int svCount;
+    //到本轮结束为止计算核函数的次数，共享缓存时为缓存的总次数
+    private final long kernelEvaluations;
+    //共享缓存的命中率，不使用共享缓存时为NaN
+    private final double kernelCacheHitRate;
+    //本轮耗时
+    private final long nanos;
+
+    public TrainingPass(int pass, boolean entireSet, int alphaPairsChanged, double maxKktViolation, double objective,
+                        double dualityGap, int svCount, long kernelEvaluations, double kernelCacheHitRate, long nanos) {
+        this.pass = pass;
+        this.entireSet = entireSet;
+        this.alphaPairsChanged = alphaPairsChanged;
+        this.maxKktViolation = maxKktViolation;
+        this.objective = objective;
+        this.dualityGap = dualityGap;
+        this.svCount = svCount;
+        this.kernelEvaluations = kernelEvaluations;
+        this.kernelCacheHitRate = kernelCacheHitRate;
+        this.nanos = nanos;
+    }
+
+    public int getPass() {
+        return pass;
+    }
+
+    public boolean isEntireSet() {
+        return entireSet;
+    }
+
+    public int getAlphaPairsChanged() {
+        return alphaPairsChanged;
+    }
+
+    public double getMaxKktViolation() {
+        return maxKktViolation;
+    }
+
+    public double getObjective() {
+        return objective;
+    }
+
+    public double getDualityGap() {
+        return dualityGap;
+    }
+
+    public int getSvCount() {
+        return svCount;
+    }
+
+    public long getKernelEvaluations() {
+        return kernelEvaluations;
+    }
+
+    public double getKernelCacheHitRate() {
+        return kernelCacheHitRate;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "pass=" + pass + (entireSet ? " entire" : " bound") + " changed=" + alphaPairsChanged
+                + " maxKkt=" + maxKktViolation + " objective=" + objective + " gap=" + dualityGap + " sv=" + svCount
+                + " kernel=" + kernelEvaluations + " hitRate=" + kernelCacheHitRate + " ms=" + nanos / 1e6;
+    }
+}
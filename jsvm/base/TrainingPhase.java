@@ -0,0 +1,15 @@
+package jsvm.base;
+
+/**
+ * 训练的各个阶段
+ */
+public enum TrainingPhase {
+    //计算矩阵K
+    KERNEL_MATRIX,
+    //SMO优化
+    SMO,
+    //计算支持向量
+    CALC_SV,
+    //计算w
+    CALC_W
+}
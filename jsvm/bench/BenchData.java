@@ -0,0 +1,39 @@
+package jsvm.bench;
+
+import Jama.Matrix;
+import jsvm.data.DataSet;
+import jsvm.data.SyntheticDataSet;
+
+/**
+ * 基准测试使用的样本，由SyntheticDataSet按固定种子生成，每次运行相同
+ * 正类与负类的比例为2:3，簇中心有少量重叠
+ */
+final class BenchData {
+    private BenchData() {
+    }
+
+    static SyntheticDataSet generator(int n, long seed) {
+        return new SyntheticDataSet(seed).setFeatureCount(n).setRate(2.0 / 3).setOverlap(0.2);
+    }
+
+    /**
+     * @return 样本 m*n
+     */
+    static double[][] samples(int m, int n, long seed) {
+        DataSet dataSet = generator(n, seed).generate(0, m);
+        double[][] x = new double[m][];
+        for (int i = 0; i < m; i++) {
+            x[i] = dataSet.getRow(i, new double[n]);
+        }
+        return x;
+    }
+
+    /**
+     * 类别只由种子和样本序号决定，与特征个数无关
+     *
+     * @return 标签 m*1
+     */
+    static Matrix labels(int m, long seed) {
+        return new Matrix(generator(1, seed).generate(0, m).getLabels(), m);
+    }
+}
@@ -0,0 +1,26 @@
+package jsvm.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行jsvm.bench中的基准测试，结果以JSON格式保存，便于在版本之间比较
+ * 需要jmh-core，编译时需要jmh-generator-annprocess作为注解处理器
+ * 参数：[结果文件，默认为jmh-result.json] [基准测试的正则表达式，默认为全部]
+ * 例如只运行核函数：java jsvm.bench.Benchmarks kernel.json KernelBenchmark
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException {
+        String result = args.length > 0 ? args[0] : "jmh-result.json";
+        String include = args.length > 1 ? args[1] : Benchmarks.class.getPackage().getName() + ".*";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        new Runner(options).run();
+    }
+}
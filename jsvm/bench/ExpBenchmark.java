@@ -0,0 +1,50 @@
+package jsvm.bench;
+
+import jsvm.base.FastMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * exp：Math.exp与RBF_FAST使用的FastMath.exp，参数在RBF常见的[-20, 0]内
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpBenchmark {
+    private double[] xs;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        xs = new double[1 << 16];
+        for (int t = 0; t < xs.length; t++) xs[t] = -20 * random.nextDouble();
+    }
+
+    @Benchmark
+    public double mathExp() {
+        double s = 0;
+        for (double x : xs) s += Math.exp(x);
+        return s;
+    }
+
+    @Benchmark
+    public double fastExp() {
+        double s = 0;
+        for (double x : xs) s += FastMath.exp(x);
+        return s;
+    }
+}
@@ -0,0 +1,77 @@
+package jsvm.bench;
+
+import jsvm.ga.GeneticAlgorithm;
+import jsvm.ga.Individual;
+import jsvm.ga.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 遗传算法的一代：排序、交叉、变异、评估
+ * 适应度使用代价很小的函数，只测量遗传算法本身的开销，实际使用时适应度的评估需要训练模型
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneticAlgorithmBenchmark {
+    @Param({"50", "500"})
+    public int populationSize;
+
+    @Param({"2", "10"})
+    public int chromosomeLength;
+
+    private GeneticAlgorithm ga;
+    private Population population;
+
+    @Setup
+    public void setup() {
+        Individual.lowLimit = new double[chromosomeLength];
+        Individual.upLimit = new double[chromosomeLength];
+        Arrays.fill(Individual.upLimit, 10);
+        ga = new GeneticAlgorithm(populationSize, 0.05, 0.95, 0.5, 0.5, 2) {
+            @Override
+            public double calcFitness(Individual individual) {
+                //越接近(1, 1, ...)适应度越高
+                double s = 0;
+                for (double gene : individual.getChromosome()) {
+                    s += (gene - 1) * (gene - 1);
+                }
+                double fitness = 1 / (1 + s);
+                individual.setFitness(fitness);
+                return fitness;
+            }
+
+            @Override
+            public boolean isTerminationConditionMet(Population population) {
+                return false;
+            }
+        };
+        population = ga.initPopulation(chromosomeLength);
+        ga.evalPopulation(population);
+    }
+
+    @Benchmark
+    public Population generation() {
+        ga.sortPopulation(population);
+        Population next = ga.crossoverPopulation(population);
+        next = ga.mutatePopulation(next);
+        ga.evalPopulation(next);
+        population = next;
+        return next;
+    }
+}
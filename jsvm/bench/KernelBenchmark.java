@@ -0,0 +1,68 @@
+package jsvm.bench;
+
+import Jama.Matrix;
+import jsvm.base.KernelFunctions;
+import jsvm.base.SparseMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 核函数：一个样本与全部样本的核函数，即矩阵K的一列
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+    @Param({"1000", "10000"})
+    public int sampleCount;
+
+    @Param({"10", "100"})
+    public int featureCount;
+
+    private Matrix X;
+    private Matrix A;
+    private SparseMatrix sparseX;
+    private SparseMatrix sparseA;
+
+    @Setup
+    public void setup() {
+        X = new Matrix(BenchData.samples(sampleCount, featureCount, 1));
+        A = X.getMatrix(0, 0, 0, featureCount - 1);
+        sparseX = SparseMatrix.fromDense(X);
+        sparseA = sparseX.row(0);
+    }
+
+    @Benchmark
+    public Matrix rbfKernel() {
+        return KernelFunctions.rbfKernel(X, A, 1.0);
+    }
+
+    @Benchmark
+    public Matrix linearKernel() {
+        return KernelFunctions.linearKernel(X, A);
+    }
+
+    @Benchmark
+    public Matrix rbfKernelSparse() {
+        return KernelFunctions.rbfKernel(sparseX, sparseA, 1.0);
+    }
+
+    @Benchmark
+    public Matrix linearKernelSparse() {
+        return KernelFunctions.linearKernel(sparseX, sparseA);
+    }
+}
@@ -0,0 +1,74 @@
+package jsvm.bench;
+
+import Jama.Matrix;
+import jsvm.SvmUtil;
+import jsvm.data.SyntheticDataSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加载样本集：文本格式逐行加载、并行加载以及二进制格式
+ * 文件在临时目录中生成，结束后删除
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"10000", "100000"})
+    public int sampleCount;
+
+    @Param({"10", "100"})
+    public int featureCount;
+
+    private File textFile;
+    private File binaryFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SyntheticDataSet generator = BenchData.generator(featureCount, 5);
+        textFile = File.createTempFile("jsvm-bench", ".txt");
+        binaryFile = File.createTempFile("jsvm-bench", ".bin");
+        generator.writeText(textFile.getPath(), 0, sampleCount);
+        generator.writeBinary(binaryFile.getPath(), 0, sampleCount, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        textFile.delete();
+        binaryFile.delete();
+    }
+
+    @Benchmark
+    public HashMap<String, Matrix> loadSet() {
+        return SvmUtil.loadSet(textFile.getPath(), " ");
+    }
+
+    @Benchmark
+    public HashMap<String, Matrix> loadSetParallel() {
+        return SvmUtil.loadSetParallel(textFile.getPath(), " ");
+    }
+
+    @Benchmark
+    public HashMap<String, Matrix> loadBinarySet() {
+        return SvmUtil.loadBinarySet(binaryFile.getPath());
+    }
+}
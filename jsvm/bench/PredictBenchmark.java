@@ -0,0 +1,95 @@
+package jsvm.bench;
+
+import jsvm.base.KernelType;
+import jsvm.base.SvmModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预测：单个样本和一块样本
+ * 预测的代价只与支持向量的个数和特征个数有关，模型直接由随机的支持向量构造
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictBenchmark {
+    //每次批量预测的样本个数
+    private static final int BATCH = 256;
+
+    @Param({"100", "1000"})
+    public int svCount;
+
+    @Param({"10", "100"})
+    public int featureCount;
+
+    @Param({"RBF", "RBF_FAST", "LINEAR", "POLY", "SIGMOID"})
+    public KernelType kernelType;
+
+    private SvmModel model;
+    //BATCH*n 按行连续存放
+    private double[] batch;
+    private double[][] rows;
+    private int next;
+
+    @Setup
+    public void setup() {
+        double[][] sv = BenchData.samples(svCount, featureCount, 3);
+        double[] flat = new double[svCount * featureCount];
+        double[] coef = new double[svCount];
+        Random random = new Random(3);
+        for (int i = 0; i < svCount; i++) {
+            System.arraycopy(sv[i], 0, flat, i * featureCount, featureCount);
+            coef[i] = random.nextDouble() * (random.nextBoolean() ? 1 : -1);
+        }
+        model = new SvmModel(kernelType, param(), 0.1, coef, DoubleBuffer.wrap(flat), featureCount, null);
+
+        rows = BenchData.samples(BATCH, featureCount, 4);
+        batch = new double[BATCH * featureCount];
+        for (int i = 0; i < BATCH; i++) {
+            System.arraycopy(rows[i], 0, batch, i * featureCount, featureCount);
+        }
+    }
+
+    private double[] param() {
+        switch (kernelType) {
+            case LINEAR:
+                return new double[0];
+            case POLY:
+                return new double[]{1.0 / featureCount, 1, 3};
+            case SIGMOID:
+                return new double[]{1.0 / featureCount, 0};
+            default:
+                return new double[]{Math.sqrt(featureCount)};
+        }
+    }
+
+    @Benchmark
+    public int predict() {
+        next = (next + 1) % BATCH;
+        return model.predict(rows[next]);
+    }
+
+    /**
+     * 结果为一块的耗时，每个样本的耗时需要除以BATCH
+     */
+    @Benchmark
+    public double[] decisionValuesBatch() {
+        return model.decisionValues(batch, BATCH);
+    }
+}
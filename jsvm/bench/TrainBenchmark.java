@@ -0,0 +1,117 @@
+package jsvm.bench;
+
+import Jama.Matrix;
+import jsvm.base.SparseMatrix;
+import jsvm.base.SupportVectorMachine;
+import jsvm.base.SvmModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 训练的各个阶段：计算矩阵K、SMO到收敛
+ * 所有训练器的train都使用SupportVectorMachine中的同一套calcKernelMatrix和smo，只是边界C不同，
+ * 因此用一个边界为常数的训练器测量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrainBenchmark {
+    @Param({"500", "2000"})
+    public int sampleCount;
+
+    @Param({"10", "100"})
+    public int featureCount;
+
+    //dense | sparse
+    @Param({"dense", "sparse"})
+    public String storage;
+
+    //platt : 默认的启发式选择 | kkt : 最大违反对，eps = 1e-3
+    @Param({"platt", "kkt"})
+    public String solver;
+
+    private BenchSvm svm;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Matrix x = new Matrix(BenchData.samples(sampleCount, featureCount, 2));
+        Matrix y = BenchData.labels(sampleCount, 2);
+        svm = storage.equals("sparse") ? new BenchSvm(SparseMatrix.fromDense(x), y) : new BenchSvm(x, y);
+        if (solver.equals("kkt")) svm.setKktTolerance(1e-3);
+        svm.buildKernelMatrix();
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        svm.initSvm();
+    }
+
+    @Benchmark
+    public Object kernelMatrix() {
+        return svm.buildKernelMatrix();
+    }
+
+    @Benchmark
+    public double smo() {
+        return svm.runSmo();
+    }
+
+    /**
+     * 边界为常数C = 1，核函数为RBF theta = sqrt(featureCount)
+     */
+    static class BenchSvm extends SupportVectorMachine {
+        BenchSvm(Matrix data, Matrix labels) {
+            super(data, labels);
+        }
+
+        BenchSvm(SparseMatrix data, Matrix labels) {
+            super(data, labels);
+        }
+
+        @Override
+        protected double calcBoundC(int i) {
+            return 1;
+        }
+
+        /**
+         * 每次都重新计算
+         */
+        Object buildKernelMatrix() {
+            kernelParam = new double[]{Math.sqrt(featureCount)};
+            K = null;
+            calcKernelMatrix();
+            return K;
+        }
+
+        double runSmo() {
+            smo(Integer.MAX_VALUE);
+            return b;
+        }
+
+        @Override
+        public SvmModel train(int maxIteration, double... param) {
+            kernelParam = Arrays.copyOf(param, param.length);
+            calcKernelMatrix();
+            smo(maxIteration);
+            calcSV();
+            calcW();
+            return buildModel();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package jsvm.data;
+
+import Jama.Matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制按列存放的样本集
+ * <p>
+ * 文件格式(小端)：
+ * -头部 64字节 : magic(int) version(int) flags(int) featureCount(int) sampleCount(long) checksum(long) 填充
+ * -特征 : 第0列的m个值, 第1列的m个值 ... 第n-1列的m个值
+ * -标签 : m个值
+ * flags的最低位为1时数值为float，否则为double
+ * checksum为头部之后所有字节的CRC32
+ * <p>
+ * 加载时每一列单独内存映射，不需要解析即可直接访问
+ */
+public class BinaryDataSet {
+    private static final int MAGIC = 0x4A535644;//JSVD
+    private static final int VERSION = 1;
+    private static final int FLAG_FLOAT = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final int sampleCount;
+    private final int featureCount;
+    private final boolean floatValues;
+    private final long checksum;
+
+    //每一列的映射 - n+1个，最后一个为标签
+    private final ByteBuffer[] columns;
+
+    private BinaryDataSet(int sampleCount, int featureCount, boolean floatValues, long checksum,
+                          ByteBuffer[] columns) {
+        this.sampleCount = sampleCount;
+        this.featureCount = featureCount;
+        this.floatValues = floatValues;
+        this.checksum = checksum;
+        this.columns = columns;
+    }
+
+    /**
+     * 将样本集保存为二进制文件
+     *
+     * @param dataSet     样本集
+     * @param filePath    path
+     * @param floatValues 是否以float保存
+     * @throws IOException 写入失败
+     */
+    public static void save(DataSet dataSet, String filePath, boolean floatValues) throws IOException {
+        int m = dataSet.getSampleCount();
+        int n = dataSet.getFeatureCount();
+        double[] data = dataSet.getData();
+        double[] labels = dataSet.getLabels();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            int valueSize = floatValues ? 4 : 8;
+
+            channel.position(HEADER_SIZE);
+            for (int j = 0; j <= n; j++) {
+                for (int i = 0; i < m; i++) {
+                    if (buf.remaining() < valueSize) flush(channel, buf, crc);
+                    double value = j < n ? data[i * n + j] : labels[i];
+                    if (floatValues) buf.putFloat((float) value);
+                    else buf.putDouble(value);
+                }
+            }
+            flush(channel, buf, crc);
+            writeHeader(channel, m, n, floatValues, crc.getValue());
+        }
+    }
+
+    /**
+     * 按行生成样本并保存，不需要把整个样本集放在内存中
+     * 每次生成CHUNK行，每一列写入各自的位置，全部写完后按文件顺序读取一遍计算CRC32
+     *
+     * @param sampleCount  样本个数 - m
+     * @param featureCount 特征个数 - n
+     * @param source       第i个样本
+     * @param filePath     path
+     * @param floatValues  是否以float保存
+     * @throws IOException 写入失败
+     */
+    public static void save(int sampleCount, int featureCount, RowSource source, String filePath,
+                            boolean floatValues) throws IOException {
+        int m = sampleCount;
+        int n = featureCount;
+        int valueSize = floatValues ? 4 : 8;
+        long columnSize = (long) m * valueSize;
+        int chunk = Math.max(1, Math.min(m, BUFFER_SIZE / valueSize));
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            //chunk行的每一列 - (n+1)*chunk，最后一列为标签
+            double[][] columns = new double[n + 1][chunk];
+            double[] row = new double[n];
+            ByteBuffer buf = ByteBuffer.allocate(chunk * valueSize).order(ByteOrder.LITTLE_ENDIAN);
+            for (int start = 0; start < m; start += chunk) {
+                int rows = Math.min(chunk, m - start);
+                for (int r = 0; r < rows; r++) {
+                    columns[n][r] = source.row(start + r, row);
+                    for (int j = 0; j < n; j++) columns[j][r] = row[j];
+                }
+                for (int j = 0; j <= n; j++) {
+                    buf.clear();
+                    for (int r = 0; r < rows; r++) {
+                        if (floatValues) buf.putFloat((float) columns[j][r]);
+                        else buf.putDouble(columns[j][r]);
+                    }
+                    buf.flip();
+                    long position = HEADER_SIZE + columnSize * j + (long) start * valueSize;
+                    while (buf.hasRemaining()) position += channel.write(buf, position);
+                }
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer read = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = HEADER_SIZE;
+            long end = HEADER_SIZE + columnSize * (n + 1);
+            while (position < end) {
+                read.clear();
+                if (end - position < read.capacity()) read.limit((int) (end - position));
+                int count = channel.read(read, position);
+                if (count < 0) throw new IOException("文件长度不一致 : " + filePath);
+                crc.update(read.array(), 0, count);
+                position += count;
+            }
+
+            writeHeader(channel, m, n, floatValues, crc.getValue());
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, long m, int n, boolean floatValues, long checksum)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(floatValues ? FLAG_FLOAT : 0);
+        buf.putInt(n);
+        buf.putLong(m);
+        buf.putLong(checksum);
+        while (buf.position() < HEADER_SIZE) buf.put((byte) 0);
+        buf.flip();
+        channel.position(0);
+        while (buf.hasRemaining()) channel.write(buf);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buf, CRC32 crc) throws IOException {
+        buf.flip();
+        crc.update(buf.array(), 0, buf.limit());
+        while (buf.hasRemaining()) channel.write(buf);
+        buf.clear();
+    }
+
+    /**
+     * 内存映射二进制样本集
+     *
+     * @param filePath       path
+     * @param verifyChecksum 是否校验CRC32，校验需要读取整个文件
+     * @return 样本集
+     * @throws IOException 文件读取失败、格式不正确或校验失败
+     */
+    public static BinaryDataSet open(String filePath, boolean verifyChecksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("文件头不完整 : " + filePath);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) throw new IOException("不是二进制样本集文件 : " + filePath);
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException("不支持的版本 : " + version);
+            boolean floatValues = (header.getInt() & FLAG_FLOAT) != 0;
+            int n = header.getInt();
+            long m = header.getLong();
+            long checksum = header.getLong();
+            //特征列和标签列共n+1列
+            if (n < 0 || n == Integer.MAX_VALUE || m < 0) throw new IOException("文件头不合法 : " + filePath);
+
+            long columnSize = m * (floatValues ? 4 : 8);
+            if (columnSize > Integer.MAX_VALUE) throw new IOException("单列超过2G，无法映射 : " + m);
+            if (channel.size() != HEADER_SIZE + columnSize * (n + 1L)) {
+                throw new IOException("文件长度与头部不一致 : " + filePath);
+            }
+
+            ByteBuffer[] columns = new ByteBuffer[n + 1];
+            for (int j = 0; j <= n; j++) {
+                MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + columnSize * j, columnSize);
+                columns[j] = column.order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            BinaryDataSet dataSet = new BinaryDataSet((int) m, n, floatValues, checksum, columns);
+            if (verifyChecksum && !dataSet.verify()) {
+                throw new IOException("校验失败 : " + filePath);
+            }
+            return dataSet;
+        }
+    }
+
+    /**
+     * @return CRC32是否与文件头一致
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        for (ByteBuffer column : columns) {
+            crc.update(column.duplicate());
+        }
+        return crc.getValue() == checksum;
+    }
+
+    /**
+     * @param j 特征序号，j == featureCount 时为标签
+     * @return 第j列的只读视图
+     */
+    public DoubleBuffer column(int j) {
+        if (floatValues) throw new IllegalStateException("数值以float保存，请使用floatColumn");
+        return columns[j].duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /**
+     * @param j 特征序号，j == featureCount 时为标签
+     * @return 第j列的只读视图
+     */
+    public FloatBuffer floatColumn(int j) {
+        if (!floatValues) throw new IllegalStateException("数值以double保存，请使用column");
+        return columns[j].duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    public double get(int i, int j) {
+        return floatValues ? columns[j].getFloat(i * 4) : columns[j].getDouble(i * 8);
+    }
+
+    public double getLabel(int i) {
+        return get(i, featureCount);
+    }
+
+    /**
+     * 按列整体复制，得到列优先存放的数组
+     *
+     * @param j      列序号
+     * @param dst    目标数组
+     * @param offset 目标数组偏移
+     */
+    private void copyColumn(int j, double[] dst, int offset) {
+        if (floatValues) {
+            FloatBuffer column = floatColumn(j);
+            for (int i = 0; i < sampleCount; i++) {
+                dst[offset + i] = column.get(i);
+            }
+        } else {
+            column(j).get(dst, offset, sampleCount);
+        }
+    }
+
+    /**
+     * @return 按行连续存放的样本集
+     */
+    public DataSet toDataSet() {
+        int m = sampleCount;
+        int n = featureCount;
+        double[] column = new double[m];
+        double[] data = new double[cellCount(m, n)];
+        for (int j = 0; j < n; j++) {
+            copyColumn(j, column, 0);
+            for (int i = 0; i < m; i++) {
+                data[i * n + j] = column[i];
+            }
+        }
+        double[] labels = new double[m];
+        copyColumn(n, labels, 0);
+        return new DataSet(m, n, data, labels);
+    }
+
+    /**
+     * @return {data : Matrix data(m*n),labels : Matrix labels(1*m)}
+     */
+    public HashMap<String, Matrix> toMap() {
+        int m = sampleCount;
+        int n = featureCount;
+
+        //Jama的一维构造按列优先，与文件布局一致
+        double[] columnPacked = new double[cellCount(m, n)];
+        for (int j = 0; j < n; j++) {
+            copyColumn(j, columnPacked, j * m);
+        }
+        double[] labels = new double[m];
+        copyColumn(n, labels, 0);
+
+        HashMap<String, Matrix> map = new HashMap<>();
+        map.put("data", m == 0 ? new Matrix(0, n) : new Matrix(columnPacked, m));//m*n
+        map.put("labels", new Matrix(labels, 1));//1*m
+        return map;
+    }
+
+    /**
+     * @return m*n，超过一个数组能存放的个数时抛出异常而不是溢出
+     */
+    private static int cellCount(int m, int n) {
+        try {
+            return Math.multiplyExact(m, n);
+        } catch (ArithmeticException e) {
+            throw new IllegalStateException("样本集过大，无法放入一个数组 : " + m + "*" + n + "，请按列读取", e);
+        }
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public boolean isFloatValues() {
+        return floatValues;
+    }
+}
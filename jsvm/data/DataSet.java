@@ -0,0 +1,115 @@
+package jsvm.data;
+
+import Jama.Matrix;
+
+import java.util.HashMap;
+
+/**
+ * 按行连续存放的稠密样本集
+ * data[i * featureCount + j] 为第i个样本的第j个特征
+ */
+public class DataSet {
+    //样本的个数 - m
+    private final int sampleCount;
+    //特征的个数 - n
+    private final int featureCount;
+    //样本 - m*n 按行连续存放
+    private final double[] data;
+    //标签 - m
+    private final double[] labels;
+
+    public DataSet(int sampleCount, int featureCount, double[] data, double[] labels) {
+        if (data.length != (long) sampleCount * featureCount || labels.length != sampleCount) {
+            throw new IllegalArgumentException("数据维度不一致 : " + sampleCount + "*" + featureCount
+                    + " data.length = " + data.length + " labels.length = " + labels.length);
+        }
+        this.sampleCount = sampleCount;
+        this.featureCount = featureCount;
+        this.data = data;
+        this.labels = labels;
+    }
+
+    /**
+     * 由loadSet格式的map构造
+     *
+     * @param map {data : Matrix data(m*n),labels : Matrix labels(1*m)}
+     * @return 样本集
+     */
+    public static DataSet fromMap(HashMap<String, Matrix> map) {
+        Matrix dataMat = map.get("data");
+        Matrix labelsMat = map.get("labels");
+
+        int m = dataMat.getRowDimension();
+        int n = dataMat.getColumnDimension();
+
+        double[][] arr = dataMat.getArray();
+        double[] data = new double[m * n];
+        for (int i = 0; i < m; i++) {
+            System.arraycopy(arr[i], 0, data, i * n, n);
+        }
+
+        double[] labels = new double[m];
+        for (int i = 0; i < m; i++) {
+            labels[i] = labelsMat.get(0, i);
+        }
+        return new DataSet(m, n, data, labels);
+    }
+
+    /**
+     * 转化为loadSet格式的map
+     *
+     * @return {data : Matrix data(m*n),labels : Matrix labels(1*m)}
+     */
+    public HashMap<String, Matrix> toMap() {
+        HashMap<String, Matrix> map = new HashMap<>();
+
+        Matrix dataMat = new Matrix(sampleCount, featureCount);
+        double[][] arr = dataMat.getArray();
+        for (int i = 0; i < sampleCount; i++) {
+            System.arraycopy(data, i * featureCount, arr[i], 0, featureCount);
+        }
+
+        Matrix labelsMat = new Matrix(1, sampleCount);
+        System.arraycopy(labels, 0, labelsMat.getArray()[0], 0, sampleCount);
+
+        map.put("data", dataMat);//m*n
+        map.put("labels", labelsMat);//1*m
+        return map;
+    }
+
+    /**
+     * 将第i个样本复制到buf中
+     *
+     * @param i   样本序号
+     * @param buf 长度为n的缓存
+     * @return buf
+     */
+    public double[] getRow(int i, double[] buf) {
+        System.arraycopy(data, i * featureCount, buf, 0, featureCount);
+        return buf;
+    }
+
+    public double get(int i, int j) {
+        return data[i * featureCount + j];
+    }
+
+    public double getLabel(int i) {
+        return labels[i];
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    public double[] getData() {
+        return data;
+    }
+
+    public double[] getLabels() {
+        return labels;
+    }
+}
@@ -0,0 +1,330 @@
+package jsvm.data;
+
+import Jama.Matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 特征转换流水线
+ * 由若干输出列(选择某一列、两列之比)、缩放和合法性过滤组成
+ * 构造完成后编译为数组，每个样本只需要一次遍历即可得到全部输出列并判断是否合法
+ * 创建后不可修改，可以在多个线程中同时使用
+ */
+public class FeaturePipeline {
+    private static final int SELECT = 0;
+    private static final int RATIO = 1;
+
+    //使用到的输入特征个数，输入中多出的列被忽略
+    private final int inputCount;
+    //输出特征个数
+    private final int outputCount;
+
+    //每个输出列的计算方式
+    private final int[] opType;
+    private final int[] srcA;
+    private final int[] srcB;
+
+    //输出列的缩放 out = out * mul + add，为空时不缩放
+    private final double[] mul;
+    private final double[] add;
+
+    //是否过滤含有NaN或Inf的样本
+    private final boolean dropInvalid;
+    //输出列的合法范围
+    private final double[] low;
+    private final double[] high;
+
+    private FeaturePipeline(Builder builder) {
+        this.inputCount = builder.inputCount;
+        this.outputCount = builder.opType.size();
+        this.opType = new int[outputCount];
+        this.srcA = new int[outputCount];
+        this.srcB = new int[outputCount];
+        for (int j = 0; j < outputCount; j++) {
+            opType[j] = builder.opType.get(j);
+            srcA[j] = builder.srcA.get(j);
+            srcB[j] = builder.srcB.get(j);
+        }
+
+        if (builder.mul != null && builder.mul.length != outputCount) {
+            throw new IllegalArgumentException("缩放参数个数与输出列个数不一致 : "
+                    + builder.mul.length + " , " + outputCount);
+        }
+        this.mul = builder.mul;
+        this.add = builder.add;
+        this.dropInvalid = builder.dropInvalid;
+
+        this.low = new double[outputCount];
+        this.high = new double[outputCount];
+        Arrays.fill(low, Double.NEGATIVE_INFINITY);
+        Arrays.fill(high, Double.POSITIVE_INFINITY);
+        for (double[] range : builder.ranges) {
+            int j = (int) range[0];
+            low[j] = Math.max(low[j], range[1]);
+            high[j] = Math.min(high[j], range[2]);
+        }
+    }
+
+    /**
+     * @param inputCount 使用到的输入特征个数
+     * @return builder
+     */
+    public static Builder builder(int inputCount) {
+        return new Builder(inputCount);
+    }
+
+    /**
+     * 发动机数据的12个特征，与原先dataFilter的处理一致
+     * 0 1 2 3   4   5   6   7    8     9    10   11
+     * 0 1 2 2/1 5/3 6/4 9/7 10/8 11/10 12/9 13/1 14
+     *
+     * @return 流水线
+     */
+    public static FeaturePipeline engineFeatures() {
+        return builder(15)
+                //0-油门杆角度、1-风扇转速、2-压气机转速
+                .select(0).select(1).select(2)
+                //3-压气机转速/风扇转速
+                .ratio(2, 1)
+                .ratio(5, 3)
+                .ratio(6, 4)
+                .ratio(9, 7)
+                .ratio(10, 8)
+                .ratio(11, 10)
+                .ratio(12, 9)
+                .ratio(13, 1)
+                .select(14)
+                .dropInvalid()
+                .build();
+    }
+
+    /**
+     * 转化一个样本
+     *
+     * @param in        输入
+     * @param inOffset  输入在数组中的偏移
+     * @param out       输出
+     * @param outOffset 输出在数组中的偏移
+     * @return 样本是否合法
+     */
+    public boolean transformRow(double[] in, int inOffset, double[] out, int outOffset) {
+        boolean valid = true;
+        for (int j = 0; j < outputCount; j++) {
+            double v = in[inOffset + srcA[j]];
+            if (opType[j] == RATIO) v /= in[inOffset + srcB[j]];
+            if (mul != null) v = v * mul[j] + add[j];
+            if (dropInvalid && (Double.isNaN(v) || Double.isInfinite(v))) valid = false;
+            if (v < low[j] || v > high[j]) valid = false;
+            out[outOffset + j] = v;
+        }
+        return valid;
+    }
+
+    /**
+     * 预测时转化单个样本
+     *
+     * @param x 1*inputCount
+     * @return 1*outputCount，样本不合法时为null
+     */
+    public Matrix transformSample(Matrix x) {
+        double[] out = new double[outputCount];
+        checkInputCount(x.getColumnDimension());
+        if (!transformRow(x.getArray()[0], 0, out, 0)) return null;
+        return new Matrix(out, 1);
+    }
+
+    /**
+     * 转化整个样本集并去掉不合法的样本
+     * 只遍历一次，除输出本身外不分配额外的矩阵
+     *
+     * @param map {data : Matrix data(m*inputCount),labels : Matrix labels(1*m)}
+     * @return {data : Matrix data(p*outputCount),labels : Matrix labels(1*p)}
+     */
+    public HashMap<String, Matrix> apply(HashMap<String, Matrix> map) {
+        Matrix data = map.get("data");
+        Matrix labels = map.get("labels");
+        checkInputCount(data.getColumnDimension());
+
+        int m = data.getRowDimension();
+        double[][] arr = data.getArray();
+        double[] labelArr = labels.getArray()[0];
+
+        double[][] res = new double[m][];
+        double[] resLabels = new double[m];
+        int count = 0;
+        double[] row = new double[outputCount];
+        for (int i = 0; i < m; i++) {
+            if (transformRow(arr[i], 0, row, 0)) {
+                res[count] = row;
+                resLabels[count] = labelArr[i];
+                count++;
+                row = new double[outputCount];
+            }
+        }
+
+        HashMap<String, Matrix> resMap = new HashMap<>();
+        resMap.put("data", new Matrix(Arrays.copyOf(res, count), count, outputCount));
+        resMap.put("labels", new Matrix(Arrays.copyOf(resLabels, count), 1));
+        return resMap;
+    }
+
+    /**
+     * 转化按行连续存放的样本集并去掉不合法的样本
+     *
+     * @param dataSet 样本集
+     * @return 转化后的样本集
+     */
+    public DataSet apply(DataSet dataSet) {
+        int n = dataSet.getFeatureCount();
+        checkInputCount(n);
+
+        int m = dataSet.getSampleCount();
+        double[] data = dataSet.getData();
+        double[] labels = dataSet.getLabels();
+
+        double[] res = new double[m * outputCount];
+        double[] resLabels = new double[m];
+        int count = 0;
+        for (int i = 0; i < m; i++) {
+            if (transformRow(data, i * n, res, count * outputCount)) {
+                resLabels[count] = labels[i];
+                count++;
+            }
+        }
+        return new DataSet(count, outputCount, Arrays.copyOf(res, count * outputCount),
+                Arrays.copyOf(resLabels, count));
+    }
+
+    void checkInputCount(int featureCount) {
+        if (featureCount < inputCount) {
+            throw new IllegalArgumentException("输入特征个数不足 : 需要" + inputCount + " 实际" + featureCount);
+        }
+    }
+
+    /**
+     * 将归一化合并到流水线中，与特征转换在同一次遍历中完成
+     * 例如 pipeline.withScale(scaler.getMul(), scaler.getAdd())
+     *
+     * @param mul 每个输出列的缩放系数
+     * @param add 每个输出列的偏移
+     * @return 在本流水线之后再进行缩放的新流水线
+     */
+    public FeaturePipeline withScale(double[] mul, double[] add) {
+        Builder builder = toBuilder();
+        if (this.mul != null) {
+            //合并两次缩放 (v * m1 + a1) * m2 + a2
+            double[] newMul = new double[outputCount];
+            double[] newAdd = new double[outputCount];
+            for (int j = 0; j < outputCount; j++) {
+                newMul[j] = this.mul[j] * mul[j];
+                newAdd[j] = this.add[j] * mul[j] + add[j];
+            }
+            return builder.scale(newMul, newAdd).build();
+        }
+        return builder.scale(mul, add).build();
+    }
+
+    private Builder toBuilder() {
+        Builder builder = new Builder(inputCount);
+        for (int j = 0; j < outputCount; j++) {
+            builder.opType.add(opType[j]);
+            builder.srcA.add(srcA[j]);
+            builder.srcB.add(srcB[j]);
+        }
+        builder.mul = mul;
+        builder.add = add;
+        builder.dropInvalid = dropInvalid;
+        for (int j = 0; j < outputCount; j++) {
+            if (low[j] != Double.NEGATIVE_INFINITY || high[j] != Double.POSITIVE_INFINITY) {
+                builder.ranges.add(new double[]{j, low[j], high[j]});
+            }
+        }
+        return builder;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getOutputCount() {
+        return outputCount;
+    }
+
+    public static class Builder {
+        private final int inputCount;
+        private final List<Integer> opType = new ArrayList<>();
+        private final List<Integer> srcA = new ArrayList<>();
+        private final List<Integer> srcB = new ArrayList<>();
+        private final List<double[]> ranges = new ArrayList<>();
+        private double[] mul;
+        private double[] add;
+        private boolean dropInvalid;
+
+        private Builder(int inputCount) {
+            this.inputCount = inputCount;
+        }
+
+        /**
+         * 输出第col列
+         */
+        public Builder select(int col) {
+            checkColumn(col);
+            opType.add(SELECT);
+            srcA.add(col);
+            srcB.add(-1);
+            return this;
+        }
+
+        /**
+         * 输出 第num列 / 第den列
+         */
+        public Builder ratio(int num, int den) {
+            checkColumn(num);
+            checkColumn(den);
+            opType.add(RATIO);
+            srcA.add(num);
+            srcB.add(den);
+            return this;
+        }
+
+        /**
+         * 对所有输出列进行缩放 out = out * mul + add
+         */
+        public Builder scale(double[] mul, double[] add) {
+            if (mul.length != add.length) throw new IllegalArgumentException("缩放参数长度不一致");
+            this.mul = mul.clone();
+            this.add = add.clone();
+            return this;
+        }
+
+        /**
+         * 去掉含有NaN或Inf的样本
+         */
+        public Builder dropInvalid() {
+            this.dropInvalid = true;
+            return this;
+        }
+
+        /**
+         * 去掉第outCol个输出列(缩放之后)不在[low, high]内的样本
+         */
+        public Builder range(int outCol, double low, double high) {
+            ranges.add(new double[]{outCol, low, high});
+            return this;
+        }
+
+        public FeaturePipeline build() {
+            for (double[] range : ranges) {
+                if (range[0] >= opType.size()) throw new IllegalArgumentException("输出列不存在 : " + (int) range[0]);
+            }
+            return new FeaturePipeline(this);
+        }
+
+        private void checkColumn(int col) {
+            if (col < 0 || col >= inputCount) throw new IllegalArgumentException("输入列不存在 : " + col);
+        }
+    }
+}
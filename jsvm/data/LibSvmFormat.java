@@ -0,0 +1,140 @@
+package jsvm.data;
+
+import jsvm.base.SparseMatrix;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LIBSVM格式的读写
+ * 每行为 label idx:val idx:val ...，idx从1开始
+ */
+public class LibSvmFormat {
+
+    /**
+     * @param fileName     fileName
+     * @param featureCount 特征个数，小于等于0时取文件中最大的特征序号
+     * @return 稀疏样本集
+     * @throws IOException 文件读取失败或格式错误
+     */
+    public static SparseDataSet read(String fileName, int featureCount) throws IOException {
+        int[] rowPtr = new int[1024];
+        int[] colIdx = new int[4096];
+        double[] values = new double[4096];
+        double[] labels = new double[1024];
+
+        int rows = 0;
+        int nnz = 0;
+        int maxIdx = 0;
+        int lineNumber = 0;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName), 1 << 16)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] element = line.split("\\s+");
+                if (rows + 1 >= rowPtr.length) {
+                    rowPtr = Arrays.copyOf(rowPtr, rowPtr.length * 2);
+                    labels = Arrays.copyOf(labels, labels.length * 2);
+                }
+                if (nnz + element.length > values.length) {
+                    int newLength = Math.max(values.length * 2, nnz + element.length);
+                    colIdx = Arrays.copyOf(colIdx, newLength);
+                    values = Arrays.copyOf(values, newLength);
+                }
+
+                try {
+                    labels[rows] = Double.parseDouble(element[0]);
+                    int rowStart = nnz;
+                    boolean sorted = true;
+                    for (int k = 1; k < element.length; k++) {
+                        int sep = element[k].indexOf(':');
+                        int idx = Integer.parseInt(element[k].substring(0, sep)) - 1;
+                        double val = Double.parseDouble(element[k].substring(sep + 1));
+                        if (idx < 0) throw new IOException("特征序号必须从1开始 : 第" + lineNumber + "行");
+                        if (val == 0) continue;
+                        if (nnz > rowStart && idx <= colIdx[nnz - 1]) sorted = false;
+                        colIdx[nnz] = idx;
+                        values[nnz] = val;
+                        nnz++;
+                        maxIdx = Math.max(maxIdx, idx + 1);
+                    }
+                    if (!sorted) sortRow(colIdx, values, rowStart, nnz);
+                } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                    throw new IOException("无法解析第" + lineNumber + "行 : " + line, e);
+                }
+
+                rows++;
+                rowPtr[rows] = nnz;
+            }
+        }
+
+        if (featureCount <= 0) featureCount = maxIdx;
+        else if (maxIdx > featureCount) {
+            throw new IOException("特征序号 " + maxIdx + " 超过特征个数 " + featureCount);
+        }
+
+        SparseMatrix data = new SparseMatrix(rows, featureCount, Arrays.copyOf(rowPtr, rows + 1),
+                Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+        return new SparseDataSet(data, Arrays.copyOf(labels, rows));
+    }
+
+    /**
+     * 对一行内的非零元素按列序号排序
+     */
+    private static void sortRow(int[] colIdx, double[] values, int start, int end) throws IOException {
+        //插入排序，单行的非零元素一般不多
+        for (int p = start + 1; p < end; p++) {
+            int idx = colIdx[p];
+            double val = values[p];
+            int q = p - 1;
+            while (q >= start && colIdx[q] > idx) {
+                colIdx[q + 1] = colIdx[q];
+                values[q + 1] = values[q];
+                q--;
+            }
+            colIdx[q + 1] = idx;
+            values[q + 1] = val;
+        }
+        for (int p = start + 1; p < end; p++) {
+            if (colIdx[p] == colIdx[p - 1]) throw new IOException("特征序号重复 : " + (colIdx[p] + 1));
+        }
+    }
+
+    /**
+     * 以LIBSVM格式保存
+     *
+     * @param dataSet  稀疏样本集
+     * @param fileName fileName
+     * @throws IOException 写入失败
+     */
+    public static void write(SparseDataSet dataSet, String fileName) throws IOException {
+        SparseMatrix data = dataSet.getData();
+        double[] labels = dataSet.getLabels();
+        int[] rowPtr = data.getRowPointers();
+        int[] colIdx = data.getColumnIndices();
+        double[] values = data.getValues();
+
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < data.getRowDimension(); i++) {
+                line.setLength(0);
+                line.append(labels[i]);
+                for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                    line.append(' ').append(colIdx[p] + 1).append(':').append(values[p]);
+                }
+                line.append('\n');
+                bw.write(line.toString());
+            }
+        }
+    }
+}
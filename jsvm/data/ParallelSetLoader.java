@@ -0,0 +1,306 @@
+package jsvm.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 并行加载文本格式的样本集
+ * 每行为 特征1 特征2 ... 特征n 标签
+ * <p>
+ * -将文件内存映射
+ * -按换行符对齐切分为若干块
+ * -各块在ForkJoin公共线程池中并行解析
+ * -按块的顺序合并为按行连续存放的数组
+ */
+public class ParallelSetLoader {
+    //每块的大小范围，单次映射不能超过2G
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 1L << 28;
+
+    //快速解析时可以精确表示的10的幂
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /**
+     * @param fileName  fileName
+     * @param splitChar 分隔符，其中的每个字符以及空白符均视为分隔符
+     * @return 样本集
+     * @throws IOException 文件读取失败或格式错误
+     */
+    public static DataSet load(String fileName, String splitChar) throws IOException {
+        return load(fileName, splitChar, null);
+    }
+
+    /**
+     * 加载的同时对每个样本进行特征转换，不合法的样本直接丢弃
+     *
+     * @param fileName  fileName
+     * @param splitChar 分隔符，其中的每个字符以及空白符均视为分隔符
+     * @param pipeline  特征转换流水线，为空时不转换
+     * @return 转换后的样本集
+     * @throws IOException 文件读取失败或格式错误
+     */
+    public static DataSet load(String fileName, String splitChar, FeaturePipeline pipeline) throws IOException {
+        boolean[] delimiter = delimiterTable(splitChar);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            List<long[]> chunks = splitChunks(channel);
+
+            List<ChunkResult> results;
+            try {
+                results = chunks.parallelStream()
+                        .map(chunk -> parseChunk(channel, chunk[0], chunk[1], delimiter, pipeline))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return merge(results);
+        }
+    }
+
+    /**
+     * 将文件切分为按换行符对齐的若干块
+     *
+     * @param channel 文件
+     * @return [start, end)
+     */
+    private static List<long[]> splitChunks(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        long chunkSize = size / (threads * 4L);
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = alignToLineStart(channel, Math.min(size, start + chunkSize), size);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * 从pos开始找到下一行的起始位置
+     *
+     * @return 行首位置，若之后没有换行符则为文件末尾
+     */
+    private static long alignToLineStart(FileChannel channel, long pos, long size) throws IOException {
+        if (pos >= size) return size;
+
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        long p = pos - 1;
+        while (p < size) {
+            buf.clear();
+            int n = channel.read(buf, p);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return p + i + 1;
+            }
+            p += n;
+        }
+        return size;
+    }
+
+    /**
+     * 解析一个块
+     */
+    private static ChunkResult parseChunk(FileChannel channel, long start, long end, boolean[] delimiter,
+                                          FeaturePipeline pipeline) {
+        ChunkResult result = new ChunkResult();
+        if (end <= start) return result;
+
+        MappedByteBuffer buf;
+        try {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int limit = buf.limit();
+        double[] row = new double[16];
+        double[] transformed = pipeline == null ? null : new double[pipeline.getOutputCount() + 1];
+        int pos = 0;
+        while (pos < limit) {
+            int count = 0;
+            //逐个解析一行中的数值
+            while (pos < limit) {
+                byte c = buf.get(pos);
+                if (c == '\n') {
+                    pos++;
+                    break;
+                }
+                if (c >= 0 && delimiter[c]) {
+                    pos++;
+                    continue;
+                }
+                int tokenEnd = pos + 1;
+                while (tokenEnd < limit) {
+                    byte t = buf.get(tokenEnd);
+                    if (t == '\n' || (t >= 0 && delimiter[t])) break;
+                    tokenEnd++;
+                }
+                if (count == row.length) {
+                    double[] newRow = new double[row.length * 2];
+                    System.arraycopy(row, 0, newRow, 0, count);
+                    row = newRow;
+                }
+                row[count++] = parseDouble(buf, pos, tokenEnd);
+                pos = tokenEnd;
+            }
+            //跳过空行
+            if (count == 0) continue;
+            if (pipeline == null) {
+                result.addRow(row, count, start);
+            } else {
+                pipeline.checkInputCount(count - 1);
+                if (pipeline.transformRow(row, 0, transformed, 0)) {
+                    transformed[transformed.length - 1] = row[count - 1];
+                    result.addRow(transformed, transformed.length, start);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析[start, end)中的浮点数
+     * 有效数字不超过15位、小数位不超过22位且没有指数部分时直接计算，结果与Double.parseDouble一致
+     * 其余情况交给Double.parseDouble
+     */
+    private static double parseDouble(ByteBuffer buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        byte c = buf.get(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean simple = i < end;
+        for (; i < end; i++) {
+            c = buf.get(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') digits++;
+                mantissa = mantissa * 10 + (c - '0');
+                if (fractionDigits >= 0) fractionDigits++;
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+
+        if (simple && digits <= 15 && fractionDigits < POW10.length) {
+            double value = fractionDigits > 0 ? mantissa / POW10[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+
+        byte[] bytes = new byte[end - start];
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = buf.get(start + k);
+        }
+        String token = new String(bytes, StandardCharsets.ISO_8859_1);
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new UncheckedIOException(new IOException("无法解析的数值 : " + token, e));
+        }
+    }
+
+    /**
+     * 合并各块的解析结果
+     */
+    private static DataSet merge(List<ChunkResult> results) throws IOException {
+        int columnCount = -1;
+        long sampleCount = 0;
+        for (ChunkResult result : results) {
+            if (result.rows == 0) continue;
+            if (columnCount >= 0 && result.columns != columnCount) {
+                throw new IOException("特征个数不一致 : " + (columnCount - 1) + " , " + (result.columns - 1));
+            }
+            columnCount = result.columns;
+            sampleCount += result.rows;
+        }
+
+        if (columnCount < 0) {
+            return new DataSet(0, 0, new double[0], new double[0]);
+        }
+
+        int featureCount = columnCount - 1;
+        if (sampleCount * featureCount > Integer.MAX_VALUE - 8) {
+            throw new IOException("样本集过大，无法放入单个数组 : " + sampleCount + "*" + featureCount);
+        }
+
+        double[] data = new double[(int) sampleCount * featureCount];
+        double[] labels = new double[(int) sampleCount];
+        int row = 0;
+        for (ChunkResult result : results) {
+            for (int i = 0; i < result.rows; i++) {
+                System.arraycopy(result.values, i * columnCount, data, row * featureCount, featureCount);
+                labels[row] = result.values[i * columnCount + featureCount];
+                row++;
+            }
+        }
+        return new DataSet((int) sampleCount, featureCount, data, labels);
+    }
+
+    private static boolean[] delimiterTable(String splitChar) {
+        boolean[] table = new boolean[128];
+        table[' '] = true;
+        table['\t'] = true;
+        table['\r'] = true;
+        for (char c : splitChar.toCharArray()) {
+            if (c < 128) table[c] = true;
+        }
+        return table;
+    }
+
+    /**
+     * 单个块的解析结果，每行为 n个特征 + 标签
+     */
+    private static class ChunkResult {
+        private double[] values = new double[1024];
+        private int rows;
+        private int columns = -1;
+
+        private void addRow(double[] row, int count, long chunkStart) {
+            if (columns < 0) {
+                columns = count;
+            } else if (count != columns) {
+                throw new UncheckedIOException(new IOException("特征个数不一致 : 位于偏移量 " + chunkStart
+                        + " 之后的第" + (rows + 1) + "行, " + (columns - 1) + " , " + (count - 1)));
+            }
+
+            int size = rows * columns;
+            if (size + count > values.length) {
+                int newLength = Math.max(values.length * 2, size + count);
+                double[] newValues = new double[newLength];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            System.arraycopy(row, 0, values, size, count);
+            rows++;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package jsvm.data;
+
+/**
+ * 按行提供样本，用于不把整个样本集放在内存中的写入
+ */
+public interface RowSource {
+    /**
+     * @param i   样本序号
+     * @param row 输出第i个样本 - n
+     * @return 第i个样本的标签
+     */
+    double row(int i, double[] row);
+}
@@ -0,0 +1,46 @@
+package jsvm.data;
+
+import Jama.Matrix;
+import jsvm.base.SparseMatrix;
+
+/**
+ * 稀疏样本集
+ */
+public class SparseDataSet {
+    //样本 - m*n CSR
+    private final SparseMatrix data;
+    //标签 - m
+    private final double[] labels;
+
+    public SparseDataSet(SparseMatrix data, double[] labels) {
+        if (data.getRowDimension() != labels.length) {
+            throw new IllegalArgumentException("样本个数与标签个数不一致 : "
+                    + data.getRowDimension() + " , " + labels.length);
+        }
+        this.data = data;
+        this.labels = labels;
+    }
+
+    public SparseMatrix getData() {
+        return data;
+    }
+
+    public double[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return 标签 m*1，可直接用于构造支持向量机
+     */
+    public Matrix getLabelsMatrix() {
+        return new Matrix(labels, labels.length);
+    }
+
+    public int getSampleCount() {
+        return data.getRowDimension();
+    }
+
+    public int getFeatureCount() {
+        return data.getColumnDimension();
+    }
+}
@@ -0,0 +1,182 @@
+package jsvm.data;
+
+import jsvm.base.EvaluationReport;
+import jsvm.base.ModelEvaluator;
+import jsvm.base.SvmModel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * 从磁盘流式评估，不把整个测试集读入内存
+ * -文本文件 : 一个线程按行读取，每CHUNK行交给工作线程解析并计算，同时在处理的块不超过线程数的两倍
+ * -二进制文件 : 已经内存映射，按块并行复制成按行存放的数组再计算
+ */
+public class StreamingEvaluator {
+    //每块的样本个数
+    public static final int CHUNK = 8192;
+
+    /**
+     * @param model     模型
+     * @param fileName  文本样本集，每行为特征和标签，标签在最后
+     * @param splitChar 分隔符，与SvmUtil.loadSet一致
+     * @return 评估结果
+     * @throws IOException 读取或解析失败
+     */
+    public static EvaluationReport evaluate(SvmModel model, String fileName, String splitChar) throws IOException {
+        return evaluate(model, fileName, splitChar, null);
+    }
+
+    /**
+     * @param model     模型
+     * @param fileName  文本样本集，每行为原始特征和标签，标签在最后
+     * @param splitChar 分隔符，与SvmUtil.loadSet一致
+     * @param pipeline  特征转换，可以为空，不合法的样本不参与评估
+     * @return 评估结果
+     * @throws IOException 读取或解析失败
+     */
+    public static EvaluationReport evaluate(SvmModel model, String fileName, String splitChar,
+                                            FeaturePipeline pipeline) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        EvaluationReport total = new EvaluationReport();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            //当前块第一行的行号
+            long firstLine = 1;
+            List<String> lines = new ArrayList<>(CHUNK);
+            while (error.get() == null) {
+                String line = reader.readLine();
+                if (line != null) lines.add(line);
+                if (lines.size() == CHUNK || (line == null && !lines.isEmpty())) {
+                    List<String> chunk = lines;
+                    long chunkFirstLine = firstLine;
+                    firstLine += chunk.size();
+                    lines = new ArrayList<>(CHUNK);
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        try {
+                            EvaluationReport report = evaluateLines(model, chunk, chunkFirstLine, splitChar, pipeline);
+                            synchronized (total) {
+                                total.merge(report);
+                            }
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+                if (line == null) break;
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("评估被中断 : " + fileName, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable e = error.get();
+        if (e instanceof UncheckedIOException) throw ((UncheckedIOException) e).getCause();
+        if (e != null) throw new IOException(e.getMessage(), e);
+        synchronized (total) {
+            return total;
+        }
+    }
+
+    /**
+     * 解析并评估一块文本
+     */
+    private static EvaluationReport evaluateLines(SvmModel model, List<String> lines, long firstLine,
+                                                  String splitChar, FeaturePipeline pipeline) {
+        int n = model.getFeatureCount();
+        int rows = lines.size();
+        double[] x = new double[rows * n];
+        double[] labels = new double[rows];
+        double[] raw = null;
+        int count = 0;
+
+        for (int i = 0; i < rows; i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) continue;
+            String[] element = line.split(splitChar);
+            int length = element.length;
+            int inputCount = pipeline != null ? pipeline.getInputCount() : n;
+            if (length - 1 < inputCount || (pipeline == null && length - 1 != n)) {
+                throw new UncheckedIOException(new IOException("第" + (firstLine + i) + "行特征个数不一致 : "
+                        + inputCount + " , " + (length - 1)));
+            }
+            try {
+                labels[count] = Double.parseDouble(element[length - 1]);
+                if (pipeline == null) {
+                    for (int j = 0; j < n; j++) {
+                        x[count * n + j] = Double.parseDouble(element[j]);
+                    }
+                    count++;
+                } else {
+                    if (raw == null || raw.length != length - 1) raw = new double[length - 1];
+                    for (int j = 0; j < length - 1; j++) {
+                        raw[j] = Double.parseDouble(element[j]);
+                    }
+                    if (pipeline.transformRow(raw, 0, x, count * n)) count++;
+                }
+            } catch (NumberFormatException e) {
+                throw new UncheckedIOException(new IOException("第" + (firstLine + i) + "行 : " + e.getMessage(), e));
+            }
+        }
+        return ModelEvaluator.evaluateChunk(model, x, 0, labels, 0, count);
+    }
+
+    /**
+     * @param model   模型
+     * @param dataSet 内存映射的二进制样本集
+     * @return 评估结果
+     */
+    public static EvaluationReport evaluate(SvmModel model, BinaryDataSet dataSet) {
+        int m = dataSet.getSampleCount();
+        int n = dataSet.getFeatureCount();
+        if (n != model.getFeatureCount()) {
+            throw new IllegalArgumentException("特征个数不一致 : " + model.getFeatureCount() + " , " + n);
+        }
+        return IntStream.range(0, (m + CHUNK - 1) / CHUNK).parallel()
+                .mapToObj(c -> {
+                    int from = c * CHUNK;
+                    int rows = Math.min(CHUNK, m - from);
+                    double[] x = new double[rows * n];
+                    double[] labels = new double[rows];
+                    for (int i = 0; i < rows; i++) {
+                        for (int j = 0; j < n; j++) {
+                            x[i * n + j] = dataSet.get(from + i, j);
+                        }
+                        labels[i] = dataSet.getLabel(from + i);
+                    }
+                    return ModelEvaluator.evaluateChunk(model, x, 0, labels, 0, rows);
+                })
+                .reduce(EvaluationReport::merge).orElseGet(EvaluationReport::new);
+    }
+
+    /**
+     * @param model   模型
+     * @param dataSet 按行连续存放的样本集
+     * @return 评估结果
+     */
+    public static EvaluationReport evaluate(SvmModel model, DataSet dataSet) {
+        return ModelEvaluator.evaluate(model, dataSet.getData(), dataSet.getLabels(), dataSet.getSampleCount());
+    }
+}
@@ -0,0 +1,293 @@
+package jsvm.data;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * 可复现的合成样本集
+ * 每一类由若干个簇组成，簇中心随机生成，样本为簇中心加上正态分布的噪声
+ * 第i个样本只由种子和i决定，与生成的顺序、分块和线程无关，可以边生成边写入，百万行也不需要放在内存中
+ * <p>
+ * 二分类的标签为 +1/-1，正类与负类的比例为rate，与 data/en_lt_rate 一致；
+ * 多分类的标签为 0..c-1，第k类与第0类的比例为 rate^(k/(c-1))
+ * 类别按黄金分割序列交错分配，任意前缀中各类的比例都接近设定值
+ */
+public class SyntheticDataSet implements RowSource {
+    //黄金分割比例的小数部分
+    private static final double GOLDEN = 0.6180339887498949;
+    //overlap为0时两个簇中心的期望距离约为 SPREAD*sqrt(2)
+    private static final double SPREAD = 3;
+
+    private final long seed;
+    private int featureCount = 10;
+    private int classCount = 2;
+    private int clustersPerClass = 1;
+    //正类与负类的比例
+    private double rate = 1;
+    //每个特征上噪声的标准差
+    private double noise = 1;
+    //0 : 簇中心分开 1 : 所有簇中心重合
+    private double overlap = 0;
+    //随机翻转标签的概率
+    private double labelNoise = 0;
+
+    //簇中心 - (classCount*clustersPerClass)*n，参数改变后重新生成
+    private double[][] centers;
+    //各类的累积比例 - classCount
+    private double[] cumulative;
+
+    /**
+     * @param seed 随机数种子
+     */
+    public SyntheticDataSet(long seed) {
+        this.seed = seed;
+    }
+
+    public SyntheticDataSet setFeatureCount(int featureCount) {
+        if (featureCount < 1) throw new IllegalArgumentException("特征个数必须大于0 : " + featureCount);
+        this.featureCount = featureCount;
+        centers = null;
+        return this;
+    }
+
+    public SyntheticDataSet setClassCount(int classCount) {
+        if (classCount < 2) throw new IllegalArgumentException("类别个数必须大于1 : " + classCount);
+        this.classCount = classCount;
+        centers = null;
+        return this;
+    }
+
+    public SyntheticDataSet setClustersPerClass(int clustersPerClass) {
+        if (clustersPerClass < 1) throw new IllegalArgumentException("簇的个数必须大于0 : " + clustersPerClass);
+        this.clustersPerClass = clustersPerClass;
+        centers = null;
+        return this;
+    }
+
+    /**
+     * @param rate 正类与负类的比例，例如0.1表示每10个负类样本有1个正类样本
+     */
+    public SyntheticDataSet setRate(double rate) {
+        if (!(rate > 0)) throw new IllegalArgumentException("比例必须大于0 : " + rate);
+        this.rate = rate;
+        centers = null;
+        return this;
+    }
+
+    public SyntheticDataSet setNoise(double noise) {
+        if (noise < 0) throw new IllegalArgumentException("噪声不能小于0 : " + noise);
+        this.noise = noise;
+        return this;
+    }
+
+    /**
+     * @param overlap 0 到 1，越大不同类的簇中心越接近
+     */
+    public SyntheticDataSet setOverlap(double overlap) {
+        if (overlap < 0 || overlap > 1) throw new IllegalArgumentException("重叠程度必须在0到1之间 : " + overlap);
+        this.overlap = overlap;
+        centers = null;
+        return this;
+    }
+
+    public SyntheticDataSet setLabelNoise(double labelNoise) {
+        if (labelNoise < 0 || labelNoise > 1) throw new IllegalArgumentException("概率必须在0到1之间 : " + labelNoise);
+        this.labelNoise = labelNoise;
+        return this;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * 簇中心每一维服从 N(0, (SPREAD*(1-overlap))^2/n)，簇中心之间的距离与特征个数无关
+     */
+    private synchronized void prepare() {
+        if (centers != null) return;
+        SplittableRandom random = new SplittableRandom(seed);
+        double scale = SPREAD * (1 - overlap) / Math.sqrt(featureCount);
+        double[][] res = new double[classCount * clustersPerClass][featureCount];
+        for (double[] center : res) {
+            for (int j = 0; j < featureCount; j++) {
+                center[j] = gaussian(random) * scale;
+            }
+        }
+
+        double[] weights = new double[classCount];
+        for (int k = 0; k < classCount; k++) {
+            //二分类时第0类为负类，第1类为正类
+            weights[k] = Math.pow(rate, k / (double) (classCount - 1));
+        }
+        double total = 0;
+        for (double weight : weights) total += weight;
+        cumulative = new double[classCount];
+        double s = 0;
+        for (int k = 0; k < classCount; k++) {
+            s += weights[k] / total;
+            cumulative[k] = s;
+        }
+        cumulative[classCount - 1] = 1;
+        centers = res;
+    }
+
+    @Override
+    public double row(int i, double[] row) {
+        if (centers == null) prepare();
+        double u = ((i + 1) * GOLDEN) % 1.0;
+        int k = 0;
+        while (u >= cumulative[k]) k++;
+
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + i);
+        double[] center = centers[k * clustersPerClass + random.nextInt(clustersPerClass)];
+        for (int j = 0; j < featureCount; j++) {
+            row[j] = center[j] + gaussian(random) * noise;
+        }
+        if (labelNoise > 0 && random.nextDouble() < labelNoise) {
+            int other = random.nextInt(classCount - 1);
+            k = other < k ? other : other + 1;
+        }
+        return label(k);
+    }
+
+    private double label(int k) {
+        if (classCount == 2) return k == 1 ? 1 : -1;
+        return k;
+    }
+
+    /**
+     * 并行生成，结果与逐行生成相同
+     * 训练集和测试集可以取不相交的两段，例如 [0, m) 和 [m, 2m)
+     *
+     * @param first       第一个样本的序号
+     * @param sampleCount 样本个数
+     * @return 样本集
+     */
+    public DataSet generate(int first, int sampleCount) {
+        prepare();
+        int n = featureCount;
+        double[] data = new double[Math.multiplyExact(sampleCount, n)];
+        double[] labels = new double[sampleCount];
+        IntStream.range(0, sampleCount).parallel().forEach(i -> {
+            double[] row = new double[n];
+            labels[i] = row(first + i, row);
+            System.arraycopy(row, 0, data, i * n, n);
+        });
+        return new DataSet(sampleCount, n, data, labels);
+    }
+
+    /**
+     * 以loadSet的格式写入，每行为 x1 x2 ... xn label，以空格分隔
+     *
+     * @param fileName    fileName
+     * @param first       第一个样本的序号
+     * @param sampleCount 样本个数
+     * @throws IOException 写入失败
+     */
+    public void writeText(String fileName, int first, int sampleCount) throws IOException {
+        double[] row = new double[featureCount];
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < sampleCount; i++) {
+                double label = row(first + i, row);
+                line.setLength(0);
+                for (double value : row) {
+                    line.append(value).append(' ');
+                }
+                line.append((int) label).append('\n');
+                bw.write(line.toString());
+            }
+        }
+    }
+
+    /**
+     * 以LIBSVM格式写入，值为0的特征不写出
+     *
+     * @param fileName    fileName
+     * @param first       第一个样本的序号
+     * @param sampleCount 样本个数
+     * @throws IOException 写入失败
+     */
+    public void writeLibSvm(String fileName, int first, int sampleCount) throws IOException {
+        double[] row = new double[featureCount];
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < sampleCount; i++) {
+                double label = row(first + i, row);
+                line.setLength(0);
+                line.append((int) label);
+                for (int j = 0; j < featureCount; j++) {
+                    if (row[j] != 0) line.append(' ').append(j + 1).append(':').append(row[j]);
+                }
+                line.append('\n');
+                bw.write(line.toString());
+            }
+        }
+    }
+
+    /**
+     * 以BinaryDataSet的格式写入
+     *
+     * @param fileName    fileName
+     * @param first       第一个样本的序号
+     * @param sampleCount 样本个数
+     * @param floatValues 是否以float保存
+     * @throws IOException 写入失败
+     */
+    public void writeBinary(String fileName, int first, int sampleCount, boolean floatValues) throws IOException {
+        prepare();
+        BinaryDataSet.save(sampleCount, featureCount, (i, row) -> row(first + i, row), fileName, floatValues);
+    }
+
+    /**
+     * Marsaglia极坐标法，SplittableRandom没有nextGaussian
+     */
+    private static double gaussian(SplittableRandom random) {
+        double v1, v2, s;
+        do {
+            v1 = 2 * random.nextDouble() - 1;
+            v2 = 2 * random.nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        return v1 * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    /**
+     * 生成与 data/en_lt_rate_0、data/en_lt_rate_1 同名的训练集和测试集
+     * 参数：输出前缀(例如data/en_lt) 样本个数 特征个数 比例 [种子] [text|binary|libsvm]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("用法 : SyntheticDataSet 输出前缀 样本个数 特征个数 比例 [种子] [text|binary|libsvm]");
+            return;
+        }
+        String prefix = args[0];
+        int sampleCount = Integer.parseInt(args[1]);
+        int featureCount = Integer.parseInt(args[2]);
+        double rate = Double.parseDouble(args[3]);
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        String format = args.length > 5 ? args[5] : "text";
+
+        SyntheticDataSet generator = new SyntheticDataSet(seed).setFeatureCount(featureCount).setRate(rate);
+        for (int fold = 0; fold < 2; fold++) {
+            //训练集和测试集的簇中心相同，样本不同
+            String fileName = prefix + "_" + rate + "_" + fold;
+            int first = fold * sampleCount;
+            long start = System.nanoTime();
+            switch (format) {
+                case "binary":
+                    generator.writeBinary(fileName, first, sampleCount, false);
+                    break;
+                case "libsvm":
+                    generator.writeLibSvm(fileName, first, sampleCount);
+                    break;
+                default:
+                    generator.writeText(fileName, first, sampleCount);
+            }
+            System.out.println(fileName + " : " + (System.nanoTime() - start) / 1000000 + "ms");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jsvm.serve;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图，单位微秒
+ * 每个2的幂区间再分为8个桶，相对误差不超过12.5%，记录时无锁
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * @param micros 延迟(微秒)
+     */
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        buckets.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sum.add(micros);
+    }
+
+    private static int bucketOf(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        //最高位之后的SUB_BITS位作为桶内序号
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        int sub = (int) (v >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * @return 桶的上界
+     */
+    private static long upperOf(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = bucket / SUB_COUNT - 1;
+        long sub = bucket % SUB_COUNT;
+        return ((SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param q 分位数 (0, 1]
+     * @return 延迟(微秒)，样本落在的桶的上界
+     */
+    public long percentile(double q) {
+        long total = count.sum();
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(total * q);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) return upperOf(i);
+        }
+        return upperOf(BUCKET_COUNT - 1);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long c = count.sum();
+        return c == 0 ? 0 : sum.sum() * 1.0 / c;
+    }
+}
@@ -0,0 +1,216 @@
+package jsvm.serve;
+
+import jsvm.base.SvmModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把并发的预测请求合并成一个块再计算
+ * 第一个请求到达后最多等待window，期间到达的请求(总样本数不超过maxBatch)与其合并，
+ * 加入后会超过maxBatch的请求留到下一个块，单个请求超过maxBatch时单独成块，不拆分
+ * 用SvmModel.decisionValues一次算完，支持向量在一个块内只读取一次
+ * window为0时不等待，只合并已经排队的请求
+ */
+public class MicroBatcher implements AutoCloseable {
+    private final SvmModel model;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder sampleCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param model        模型
+     * @param windowMicros 合并请求的最长等待时间(微秒)
+     * @param maxBatch     一个块最多包含的样本个数
+     */
+    public MicroBatcher(SvmModel model, long windowMicros, int maxBatch) {
+        if (windowMicros < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException("参数不合法 : window=" + windowMicros + " maxBatch=" + maxBatch);
+        }
+        this.model = model;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = maxBatch;
+        this.dispatcher = new Thread(this::dispatch, "jsvm-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * @param x 样本 m*n 按行连续存放
+     * @param m 样本个数
+     * @return f(x) + b - m
+     */
+    public CompletableFuture<double[]> submit(double[] x, int m) {
+        if (m < 0 || x.length != (long) m * model.getFeatureCount()) {
+            throw new IllegalArgumentException("样本数组长度不一致 : " + x.length + " , " + m + "*" + model.getFeatureCount());
+        }
+        Request request = new Request(x, m);
+        queue.add(request);
+        //关闭之后加入的请求不会再被处理
+        if (!running && queue.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("已关闭"));
+        }
+        return request.future;
+    }
+
+    /**
+     * 提交并等待结果
+     *
+     * @param x 样本 m*n 按行连续存放
+     * @param m 样本个数
+     * @return f(x) + b - m
+     * @throws InterruptedException 等待时被中断
+     */
+    public double[] score(double[] x, int m) throws InterruptedException {
+        try {
+            return submit(x, m).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>();
+        //放不进上一个块的请求，作为下一个块的第一个请求
+        Request pending = null;
+        while (running) {
+            try {
+                Request first = pending != null ? pending : queue.poll(100, TimeUnit.MILLISECONDS);
+                pending = null;
+                if (first == null) continue;
+                batch.add(first);
+                int samples = first.m;
+                long deadline = first.enqueueNanos + windowNanos;
+                while (samples < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    if (samples + next.m > maxBatch) {
+                        pending = next;
+                        break;
+                    }
+                    batch.add(next);
+                    samples += next.m;
+                }
+                evaluate(batch, samples);
+            } catch (InterruptedException e) {
+                //已经取出的请求不会再被处理
+                for (Request request : batch) {
+                    request.future.completeExceptionally(new IllegalStateException("已关闭"));
+                }
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        //关闭后剩余的请求
+        if (pending != null) pending.future.completeExceptionally(new IllegalStateException("已关闭"));
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("已关闭"));
+        }
+    }
+
+    private void evaluate(List<Request> batch, int samples) {
+        int n = model.getFeatureCount();
+        try {
+            double[] x;
+            if (batch.size() == 1) {
+                x = batch.get(0).x;
+            } else {
+                x = new double[samples * n];
+                int offset = 0;
+                for (Request request : batch) {
+                    System.arraycopy(request.x, 0, x, offset, request.x.length);
+                    offset += request.x.length;
+                }
+            }
+            double[] res = model.decisionValues(x, samples);
+
+            int offset = 0;
+            for (Request request : batch) {
+                double[] part = new double[request.m];
+                System.arraycopy(res, offset, part, 0, request.m);
+                offset += request.m;
+                complete(request, part);
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+        batchCount.increment();
+    }
+
+    private void complete(Request request, double[] res) {
+        latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - request.enqueueNanos));
+        requestCount.increment();
+        sampleCount.add(request.m);
+        request.future.complete(res);
+    }
+
+    /**
+     * @return 文本格式的统计信息，每行一个 name value
+     */
+    public String metrics() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long requests = requestCount.sum();
+        long samples = sampleCount.sum();
+        long batches = batchCount.sum();
+        StringBuilder sb = new StringBuilder();
+        sb.append("requests ").append(requests).append('\n');
+        sb.append("samples ").append(samples).append('\n');
+        sb.append("batches ").append(batches).append('\n');
+        sb.append("mean_batch_samples ").append(batches == 0 ? 0 : samples * 1.0 / batches).append('\n');
+        sb.append("requests_per_second ").append(requests / seconds).append('\n');
+        sb.append("samples_per_second ").append(samples / seconds).append('\n');
+        sb.append("latency_mean_us ").append(latency.getMean()).append('\n');
+        sb.append("latency_p50_us ").append(latency.percentile(0.5)).append('\n');
+        sb.append("latency_p99_us ").append(latency.percentile(0.99)).append('\n');
+        sb.append("queue_size ").append(queue.size()).append('\n');
+        return sb.toString();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Request {
+        private final double[] x;
+        private final int m;
+        private final long enqueueNanos = System.nanoTime();
+        private final CompletableFuture<double[]> future = new CompletableFuture<>();
+
+        private Request(double[] x, int m) {
+            this.x = x;
+            this.m = m;
+        }
+    }
+}
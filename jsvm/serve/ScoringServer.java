@@ -0,0 +1,177 @@
+package jsvm.serve;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jsvm.base.SvmModel;
+import jsvm.base.SvmModelFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地预测服务，只监听127.0.0.1
+ * -POST /predict : 每行一个样本，特征用逗号分隔；每行返回 标签,决策值
+ * -GET /metrics : 请求数、吞吐量、p50/p99延迟等
+ * 每个连接在单独的线程中处理，运行在JDK 21以上时使用虚拟线程，
+ * 请求交给MicroBatcher合并后统一计算
+ */
+public class ScoringServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MicroBatcher batcher;
+    private final int featureCount;
+
+    /**
+     * @param model        模型
+     * @param port         端口，0表示随机
+     * @param windowMicros 合并请求的最长等待时间(微秒)
+     * @param maxBatch     一个块最多包含的样本个数
+     * @throws IOException 端口绑定失败
+     */
+    public ScoringServer(SvmModel model, int port, long windowMicros, int maxBatch) throws IOException {
+        this.featureCount = model.getFeatureCount();
+        this.batcher = new MicroBatcher(model, windowMicros, maxBatch);
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.server.createContext("/predict", this::handlePredict);
+        this.server.createContext("/metrics", this::handleMetrics);
+        this.server.setExecutor(executor);
+    }
+
+    /**
+     * JDK 21以上使用虚拟线程，否则使用线程池
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public MicroBatcher getBatcher() {
+        return batcher;
+    }
+
+    private void handlePredict(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "只支持POST\n");
+                return;
+            }
+            double[] x;
+            try {
+                x = parse(exchange);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+            int m = x.length / featureCount;
+            double[] res = batcher.score(x, m);
+
+            StringBuilder sb = new StringBuilder(m * 24);
+            for (double v : res) {
+                sb.append(v > 0 ? 1 : -1).append(',').append(v).append('\n');
+            }
+            send(exchange, 200, sb.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "中断\n");
+        } catch (RuntimeException e) {
+            send(exchange, 500, e.getMessage() + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            send(exchange, 200, batcher.metrics());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return 样本 m*n 按行连续存放
+     */
+    private double[] parse(HttpExchange exchange) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] tokens = line.split("[,\\s]+");
+            if (tokens.length != featureCount) {
+                throw new IllegalArgumentException("第" + (rows.size() + 1) + "行特征个数不一致 : "
+                        + featureCount + " , " + tokens.length);
+            }
+            double[] row = new double[featureCount];
+            for (int j = 0; j < featureCount; j++) {
+                row[j] = Double.parseDouble(tokens[j]);
+            }
+            rows.add(row);
+        }
+        if (rows.isEmpty()) throw new IllegalArgumentException("没有样本");
+
+        double[] x = new double[rows.size() * featureCount];
+        for (int i = 0; i < rows.size(); i++) {
+            System.arraycopy(rows.get(i), 0, x, i * featureCount, featureCount);
+        }
+        return x;
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        batcher.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 参数 : 模型文件 [端口] [等待时间(微秒)] [最大块大小]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage : ScoringServer model [port] [windowMicros] [maxBatch]");
+            return;
+        }
+        SvmModel model = SvmModelFile.load(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        long window = args.length > 2 ? Long.parseLong(args[2]) : 500;
+        int maxBatch = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        ScoringServer server = new ScoringServer(model, port, window, maxBatch);
+        server.start();
+        System.out.println("listening on 127.0.0.1:" + server.getPort());
+    }
+}
@@ -0,0 +1,94 @@
+package jsvm;
+
+import Jama.Matrix;
+import jsvm.base.Kernel;
+import jsvm.base.SvmModel;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 边界修正由SMO维护的偏差一次得到，与逐个间隔支持向量计算核函数的结果一致
+ */
+public class MarginCalibrationSvmTest {
+    private static final double Cp = 1;
+    private static final double Cn = 2;
+    private static final double Ap = 0.8;
+    private static final double An = 0.5;
+
+    private final Matrix data;
+    private final Matrix labels;
+    private final MarginCalibrationSvm svm;
+    private final SvmModel model;
+
+    public MarginCalibrationSvmTest() {
+        //两个部分重叠的高斯分布，保证两类都有间隔支持向量
+        int m = 400;
+        int n = 3;
+        Random random = new Random(7);
+        double[][] x = new double[m][n];
+        double[][] y = new double[m][1];
+        for (int i = 0; i < m; i++) {
+            y[i][0] = i % 2 == 0 ? 1 : -1;
+            for (int j = 0; j < n; j++) {
+                x[i][j] = y[i][0] + random.nextGaussian();
+            }
+        }
+        data = new Matrix(x);
+        labels = new Matrix(y);
+        svm = new MarginCalibrationSvm(data, labels);
+        model = svm.train(10000, Cp, Cn, Ap, An, 1.0);
+    }
+
+    /**
+     * 修正前的做法：对每个间隔支持向量用全部支持向量计算核函数得到f(xi)
+     */
+    @Test
+    public void calibratedBiasMatchesPerSvComputation() {
+        int[] svIdx = svm.getSvIndices();
+        double[] coef = model.getCoefficients();
+        Kernel kernel = model.getKernel();
+        double[][] x = data.getArray();
+        int n = data.getColumnDimension();
+
+        double bp = 0;
+        double bn = 0;
+        int bpCount = 0;
+        int bnCount = 0;
+        for (int t = 0; t < svIdx.length; t++) {
+            int i = svIdx[t];
+            double label = labels.get(i, 0);
+            double c = label == 1 ? Cn * An : Cp * Ap;
+            if (Math.abs(coef[t]) >= c) continue;
+
+            double fxi = 0;
+            for (int r = 0; r < svIdx.length; r++) {
+                fxi += coef[r] * kernel.apply(x[svIdx[r]], 0, x[i], 0, n);
+            }
+            if (label == 1) {
+                bpCount++;
+                bp += 1 / Ap - fxi;
+            } else {
+                bnCount++;
+                bn += -An + fxi;
+            }
+        }
+        assertTrue(bpCount > 0 && bnCount > 0);
+        assertEquals(bpCount + bnCount, svm.getMarginSvCount());
+
+        double expected = (Ap * bp / bpCount + An * bn / bnCount) / (Ap + An);
+        assertEquals(expected, model.getB(), 1e-9);
+    }
+
+    @Test
+    public void trainingDecisionValuesMatchCalibratedModel() {
+        double[] f = svm.getTrainingDecisionValues();
+        double[][] x = data.getArray();
+        for (int i = 0; i < f.length; i++) {
+            assertEquals("样本 " + i, model.decisionValue(x[i]), f[i], 1e-9);
+        }
+    }
+}
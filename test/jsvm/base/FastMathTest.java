@@ -0,0 +1,68 @@
+package jsvm.base;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FastMath.exp与Math.exp比较，相对误差不超过MAX_RELATIVE_ERROR
+ */
+public class FastMathTest {
+    private static final double MIN_ARG = -708;
+    //Math.exp(x)不溢出的最大x
+    private static final double MAX_ARG = Math.log(Double.MAX_VALUE);
+
+    private static void assertClose(double x) {
+        double expected = Math.exp(x);
+        double err = Math.abs(FastMath.exp(x) / expected - 1);
+        assertTrue("x = " + x + " 相对误差 " + err, err <= FastMath.MAX_RELATIVE_ERROR);
+    }
+
+    @Test
+    public void wholeDomain() {
+        //均匀网格覆盖整个范围
+        int grid = 4_000_000;
+        for (int t = 0; t <= grid; t++) {
+            assertClose(Math.min(MIN_ARG + (MAX_ARG - MIN_ARG) * t / grid, MAX_ARG));
+        }
+        //随机样本覆盖整个范围以及RBF常用的[-50, 0]
+        Random random = new Random(1);
+        for (int t = 0; t < 1_000_000; t++) {
+            assertClose(Math.min(MIN_ARG + (MAX_ARG - MIN_ARG) * random.nextDouble(), MAX_ARG));
+            assertClose(-50 * random.nextDouble());
+        }
+    }
+
+    @Test
+    public void nearBoundaries() {
+        double x = MIN_ARG;
+        for (int t = 0; t < 10000; t++) {
+            assertClose(x);
+            x = Math.nextUp(x);
+        }
+        x = MAX_ARG;
+        for (int t = 0; t < 10000; t++) {
+            assertClose(x);
+            x = Math.nextDown(x);
+        }
+        for (double d = 0; d < 1; d += 1e-4) {
+            assertClose(MIN_ARG + d);
+            assertClose(MAX_ARG - d);
+        }
+    }
+
+    @Test
+    public void outOfDomain() {
+        assertEquals(0, FastMath.exp(Math.nextDown(MIN_ARG)), 0);
+        assertEquals(0, FastMath.exp(-1000), 0);
+        assertEquals(0, FastMath.exp(Double.NEGATIVE_INFINITY), 0);
+        assertEquals(Double.POSITIVE_INFINITY, FastMath.exp(Math.nextUp(MAX_ARG)), 0);
+        assertEquals(Double.POSITIVE_INFINITY, FastMath.exp(710), 0);
+        assertEquals(Double.POSITIVE_INFINITY, FastMath.exp(Double.POSITIVE_INFINITY), 0);
+        assertTrue(Double.isNaN(FastMath.exp(Double.NaN)));
+        assertEquals(1, FastMath.exp(0), 0);
+    }
+}